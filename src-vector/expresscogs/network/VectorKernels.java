@@ -0,0 +1,126 @@
+package expresscogs.network;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorKernels implements NeuronKernels with SIMD lanes from the jdk.incubator.vector module. It needs
+ * JDK 16 or later, so it lives outside the main source folder and is loaded by name by ComputeBackend;
+ * compile and run it with --add-modules jdk.incubator.vector.
+ */
+final class VectorKernels implements NeuronKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final double LOG2E = 1.4426950408889634;
+    private static final double LN2_HI = 6.93147180369123816490e-01;
+    private static final double LN2_LO = 1.90821492927058770002e-10;
+    // Adding 1.5 * 2^52 rounds to the nearest integer, which is left in the low bits of the mantissa
+    private static final double ROUND = 6755399441055744.0;
+    private static final long ROUND_BITS = Double.doubleToRawLongBits(ROUND);
+    
+    @Override
+    public int loopBound(int length) {
+        return SPECIES.loopBound(length);
+    }
+    
+    private static int appendSpikes(VectorMask<Double> spike, int n, int[] indices, int offset) {
+        long bits = spike.toLong();
+        while (bits != 0) {
+            indices[offset++] = n + Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+        }
+        return offset;
+    }
+    
+    /** Approximate exp(x) to within a few ulps by range reduction to |r| <= ln(2) / 2 and a degree 11
+     * Taylor polynomial. Inputs are clamped to [-700, 700]. */
+    static DoubleVector exp(DoubleVector x) {
+        x = x.max(-700).min(700);
+        DoubleVector t = x.fma(LOG2E, ROUND);
+        DoubleVector k = t.sub(ROUND);
+        DoubleVector r = x.sub(k.mul(LN2_HI)).sub(k.mul(LN2_LO));
+        DoubleVector p = r.mul(1.0 / 39916800).add(1.0 / 3628800);
+        p = p.mul(r).add(1.0 / 362880);
+        p = p.mul(r).add(1.0 / 40320);
+        p = p.mul(r).add(1.0 / 5040);
+        p = p.mul(r).add(1.0 / 720);
+        p = p.mul(r).add(1.0 / 120);
+        p = p.mul(r).add(1.0 / 24);
+        p = p.mul(r).add(1.0 / 6);
+        p = p.mul(r).add(0.5);
+        p = p.mul(r).add(1.0);
+        p = p.mul(r).add(1.0);
+        LongVector exponent = t.reinterpretAsLongs().sub(ROUND_BITS).add(1023)
+                .lanewise(VectorOperators.LSHL, 52);
+        return p.mul(exponent.reinterpretAsDoubles());
+    }
+    
+    private static DoubleVector sum(DoubleVector g, double[][] inputs, int count, int n) {
+        for (int k = 0; k < count; ++k) {
+            g = g.add(DoubleVector.fromArray(SPECIES, inputs[k], n));
+        }
+        return g;
+    }
+    
+    @Override
+    public int integrateLif(double[] v, double[] gE, double[] gI, double[] gL, double[] dv, double[] spk, double[] in,
+            double[][] excitatoryInputs, int numExcitatory, double[][] inhibitoryInputs, int numInhibitory,
+            double vThresh, double vRest, double vDecay, double gERetain, double gIRetain, double gEMax,
+            double gIMax, int[] indices, int offset, int start, int end) {
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        for (int n = start; n < end; n += SPECIES.length()) {
+            DoubleVector vn = DoubleVector.fromArray(SPECIES, v, n);
+            VectorMask<Double> spike = vn.compare(VectorOperators.GT, vThresh);
+            zero.blend(1, spike).intoArray(spk, n);
+            offset = appendSpikes(spike, n, indices, offset);
+            vn = vn.blend(vRest, spike);
+            DoubleVector ge = DoubleVector.fromArray(SPECIES, gE, n).blend(0, spike).mul(gERetain);
+            DoubleVector gi = DoubleVector.fromArray(SPECIES, gI, n).blend(0, spike).mul(gIRetain);
+            ge = sum(ge, excitatoryInputs, numExcitatory, n).min(gEMax);
+            gi = sum(gi, inhibitoryInputs, numInhibitory, n).min(gIMax);
+            DoubleVector gl = vn.sub(vRest).mul(-vDecay);
+            DoubleVector d = gl.add(ge).sub(gi).add(DoubleVector.fromArray(SPECIES, in, n));
+            ge.intoArray(gE, n);
+            gi.intoArray(gI, n);
+            gl.intoArray(gL, n);
+            d.intoArray(dv, n);
+            vn.add(d).intoArray(v, n);
+        }
+        return offset;
+    }
+    
+    @Override
+    public int integrateAdEx(double[] v, double[] w, double[] gE, double[] gI, double[] dv, double[] dw, double[] spk,
+            double[] in, double[][] excitatoryInputs, int numExcitatory, double[][] inhibitoryInputs,
+            int numInhibitory, double vCut, double vR, double b, double gEDecay, double gIDecay, double vT,
+            double deltaT, double gL, double eL, double a, double dtOverC, double dtOverTauW, int[] indices,
+            int offset, int start, int end) {
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        for (int n = start; n < end; n += SPECIES.length()) {
+            DoubleVector vn = DoubleVector.fromArray(SPECIES, v, n);
+            VectorMask<Double> spike = vn.compare(VectorOperators.GT, vCut);
+            zero.blend(1, spike).intoArray(spk, n);
+            offset = appendSpikes(spike, n, indices, offset);
+            vn = vn.blend(vR, spike);
+            DoubleVector wn = DoubleVector.fromArray(SPECIES, w, n).add(b, spike);
+            DoubleVector ge = DoubleVector.fromArray(SPECIES, gE, n).blend(0, spike).mul(gEDecay);
+            DoubleVector gi = DoubleVector.fromArray(SPECIES, gI, n).blend(0, spike).mul(gIDecay);
+            ge = sum(ge, excitatoryInputs, numExcitatory, n);
+            gi = sum(gi, inhibitoryInputs, numInhibitory, n);
+            DoubleVector current = DoubleVector.fromArray(SPECIES, in, n).add(ge).sub(gi);
+            DoubleVector dvn = exp(vn.sub(vT).div(deltaT)).mul(gL * deltaT).sub(vn.sub(eL).mul(gL)).sub(wn)
+                    .add(current).mul(dtOverC);
+            DoubleVector dwn = vn.sub(eL).mul(a).sub(wn).mul(dtOverTauW);
+            current.intoArray(in, n);
+            ge.intoArray(gE, n);
+            gi.intoArray(gI, n);
+            dvn.intoArray(dv, n);
+            dwn.intoArray(dw, n);
+            vn.add(dvn).intoArray(v, n);
+            wn.add(dwn).intoArray(w, n);
+        }
+        return offset;
+    }
+}
@@ -24,6 +24,7 @@ public class AdExNeuronGroup implements NeuronGroup {
     private DoubleMatrix w;
     private DoubleMatrix dw;
     private DoubleMatrix spk;
+    private SpikeIndexBuffer spikeIndices;
     private double c = 2.81e-9;
     private double gL = 3.0e-8;
     private double eL = -70.6e-3;
@@ -37,21 +38,33 @@ public class AdExNeuronGroup implements NeuronGroup {
     private double vCut = vT + 5 * deltaT;
     private InputGenerator generator;
     private double dt = 0.001;
+    private ComputeBackend backend = ComputeBackend.JBLAS;
+    private NeuronKernels kernels;
+    private double[][] excitatoryInputs = new double[0][];
+    private double[][] inhibitoryInputs = new double[0][];
+    private int numExcitatoryInputs;
+    private int numInhibitoryInputs;
 
     public AdExNeuronGroup(String name, int size, boolean excitatory, InputGenerator generator) {
+        this(name, size, excitatory, generator, new RandomStream());
+    }
+    
+    /** Create a group whose positions and initial potentials are drawn from the given stream. */
+    public AdExNeuronGroup(String name, int size, boolean excitatory, InputGenerator generator, RandomStream random) {
         this.name = name;
         this.size = size;
         this.excitatory = excitatory;
-        x = DoubleMatrix.rand(size);
-        y = DoubleMatrix.rand(size);
+        x = random.rand(size, 1);
+        y = random.rand(size, 1);
         i = DoubleMatrix.zeros(size);
         gE = DoubleMatrix.zeros(size);
         gI = DoubleMatrix.zeros(size);
-        v = DoubleMatrix.ones(size).muli(eL).addi(DoubleMatrix.rand(size).muli(vCut - eL));
+        v = DoubleMatrix.ones(size).muli(eL).addi(random.rand(size, 1).muli(vCut - eL));
         dv = DoubleMatrix.zeros(size);
         w = DoubleMatrix.zeros(size);
         dw = DoubleMatrix.zeros(size);
         spk = DoubleMatrix.zeros(size);
+        spikeIndices = new SpikeIndexBuffer(size);
         this.generator = generator;
     }
 
@@ -63,6 +76,8 @@ public class AdExNeuronGroup implements NeuronGroup {
     @Override
     public void addDendriticSynapseGroup(SynapseGroup group) {
         dendriticSynapseGroups.add(group);
+        excitatoryInputs = new double[dendriticSynapseGroups.size()][];
+        inhibitoryInputs = new double[dendriticSynapseGroups.size()][];
     }
 
     @Override
@@ -70,14 +85,73 @@ public class AdExNeuronGroup implements NeuronGroup {
         axonalSynapseGroups.add(group);
     }
 
+    /** Get the engine used to update the neuron group. */
+    @Override
+    public ComputeBackend getBackend() {
+        return backend;
+    }
+    
+    /** Set the engine used to update the neuron group. The VECTOR backend falls back to ARRAY if the
+     * Vector API is not available. */
+    @Override
+    public void setBackend(ComputeBackend value) {
+        backend = value.resolve();
+        kernels = backend.getKernels();
+    }
+    
+    @Override
+    public void setRandom(RandomStream random) {
+        generator.setRandom(random);
+    }
+
     @Override
     public void update(int step) {
+        prepareUpdate(step);
+        updateSlice(step, 0, size);
+    }
+    
+    @Override
+    public boolean isSliceable() {
+        return backend != ComputeBackend.JBLAS;
+    }
+    
+    @Override
+    public void prepareUpdate(int step) {
+        if (backend == ComputeBackend.JBLAS) {
+            updateMatrices(step);
+        } else {
+            gatherInputs(step);
+        }
+    }
+    
+    @Override
+    public void updateSlice(int step, int start, int end) {
+        if (backend == ComputeBackend.JBLAS) {
+            return;
+        }
+        if (generator.isSliceable()) {
+            generator.generateInto(step, i, start, end);
+        }
+        int[] indices = spikeIndices.getSliceArray();
+        int offset = start;
+        int n = start;
+        if (backend == ComputeBackend.VECTOR) {
+            n = start + kernels.loopBound(end - start);
+            offset = kernels.integrateAdEx(v.data, w.data, gE.data, gI.data, dv.data, dw.data, spk.data, i.data,
+                    excitatoryInputs, numExcitatoryInputs, inhibitoryInputs, numInhibitoryInputs,
+                    vCut, vR, b, gEDecay, gIDecay, vT, deltaT, gL, eL, a, dt / c, dt / tauW, indices, offset, start, n);
+        }
+        offset = integrateArrays(n, end, indices, offset);
+        spikeIndices.endSlice(start, end, offset - start);
+    }
+    
+    private void updateMatrices(int step) {
+        generator.generateInto(step, i);
         v.gti(vCut, spk);
         v.put(spk, vR);
         w.put(spk, w.get(spk).add(b));
         gE.put(spk, 0);
         gI.put(spk, 0);
-        i = generator.generate();
         gE.muli(gEDecay);
         gI.muli(gIDecay);
         for (SynapseGroup synapses : dendriticSynapseGroups) {
@@ -98,6 +172,75 @@ public class AdExNeuronGroup implements NeuronGroup {
         v.subi(eL, dw).muli(a).subi(w).muli(dt / tauW);
         v.addi(dv);
         w.addi(dw);
+        spikeIndices.setSpikes(spk.data);
+    }
+    
+    /** Prepare the input currents, generating them here unless each slice can generate its own, and collect
+     * the conductance arrays of the dendritic synapse groups. */
+    private void gatherInputs(int step) {
+        generator.prepare(step);
+        if (!generator.isSliceable()) {
+            generator.generateInto(step, i, 0, size);
+        }
+        numExcitatoryInputs = 0;
+        numInhibitoryInputs = 0;
+        for (int k = 0; k < dendriticSynapseGroups.size(); ++k) {
+            SynapseGroup synapses = dendriticSynapseGroups.get(k);
+            if (synapses.getSource().isExcitatory()) {
+                excitatoryInputs[numExcitatoryInputs++] = synapses.getConductances(step).data;
+            } else {
+                inhibitoryInputs[numInhibitoryInputs++] = synapses.getConductances(step).data;
+            }
+        }
+    }
+    
+    /** Update neurons [start, end) in a single pass over the state arrays, in the same order of operations
+     * as updateMatrices, appending the index of each spiking neuron to indices from offset and returning
+     * the new offset. */
+    private int integrateArrays(int start, int end, int[] indices, int offset) {
+        double[] v = this.v.data;
+        double[] w = this.w.data;
+        double[] gE = this.gE.data;
+        double[] gI = this.gI.data;
+        double[] dv = this.dv.data;
+        double[] dw = this.dw.data;
+        double[] spk = this.spk.data;
+        double[] in = i.data;
+        for (int n = start; n < end; ++n) {
+            double vn = v[n];
+            double wn = w[n];
+            double ge = gE[n];
+            double gi = gI[n];
+            if (vn > vCut) {
+                spk[n] = 1;
+                indices[offset++] = n;
+                vn = vR;
+                wn += b;
+                ge = 0;
+                gi = 0;
+            } else {
+                spk[n] = 0;
+            }
+            ge *= gEDecay;
+            gi *= gIDecay;
+            for (int k = 0; k < numExcitatoryInputs; ++k) {
+                ge += excitatoryInputs[k][n];
+            }
+            for (int k = 0; k < numInhibitoryInputs; ++k) {
+                gi += inhibitoryInputs[k][n];
+            }
+            double current = in[n] + ge - gi;
+            double dvn = (Math.exp((vn - vT) / deltaT) * (gL * deltaT) - (vn - eL) * gL - wn + current) * (dt / c);
+            double dwn = ((vn - eL) * a - wn) * (dt / tauW);
+            in[n] = current;
+            gE[n] = ge;
+            gI[n] = gi;
+            dv[n] = dvn;
+            dw[n] = dwn;
+            v[n] = vn + dvn;
+            w[n] = wn + dwn;
+        }
+        return offset;
     }
 
     @Override
@@ -149,4 +292,14 @@ public class AdExNeuronGroup implements NeuronGroup {
     public DoubleMatrix getSpikes() {
         return spk;
     }
+
+    @Override
+    public int[] getSpikeIndices() {
+        return spikeIndices.getIndices();
+    }
+
+    @Override
+    public int getSpikeCount() {
+        return spikeIndices.getCount();
+    }
 }
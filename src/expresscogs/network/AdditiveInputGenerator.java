@@ -1,33 +1,65 @@
-package expresscogs.network;
-
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-
-import org.jblas.DoubleMatrix;
-
-public class AdditiveInputGenerator implements InputGenerator {
-    private List<InputGenerator> generators = new ArrayList<InputGenerator>();
-    private DoubleMatrix stimulus;
-    
-    public AdditiveInputGenerator(InputGenerator... stimuli) {
-        this.generators.addAll(Arrays.asList(stimuli));
-    }
-    
-    @Override
-    public void setNeuronGroup(NeuronGroup neurons) {
-        for (InputGenerator generator : generators) {
-            generator.setNeuronGroup(neurons);
-        }
-        stimulus = DoubleMatrix.zeros(neurons.getSize());
-    }
-    
-    @Override
-    public DoubleMatrix generate() {
-        stimulus.fill(0);
-        for (InputGenerator generator : generators) {
-            stimulus.addi(generator.generate());
-        }
-        return stimulus;
-    }
-}
+package expresscogs.network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jblas.DoubleMatrix;
+
+public class AdditiveInputGenerator implements InputGenerator {
+    private List<InputGenerator> generators = new ArrayList<InputGenerator>();
+    
+    public AdditiveInputGenerator(InputGenerator... stimuli) {
+        this.generators.addAll(Arrays.asList(stimuli));
+    }
+    
+    @Override
+    public void setNeuronGroup(NeuronGroup neurons) {
+        for (InputGenerator generator : generators) {
+            generator.setNeuronGroup(neurons);
+        }
+    }
+    
+    @Override
+    public void setRandom(RandomStream random) {
+        for (InputGenerator generator : generators) {
+            generator.setRandom(random.split());
+        }
+    }
+    
+    @Override
+    public boolean isSliceable() {
+        for (InputGenerator generator : generators) {
+            if (!generator.isSliceable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public void prepare(int step) {
+        for (InputGenerator generator : generators) {
+            generator.prepare(step);
+        }
+    }
+    
+    @Override
+    public void generateInto(int step, DoubleMatrix input, int start, int end) {
+        if (generators.isEmpty()) {
+            Arrays.fill(input.data, start, end, 0);
+            return;
+        }
+        generators.get(0).generateInto(step, input, start, end);
+        for (int k = 1; k < generators.size(); ++k) {
+            generators.get(k).accumulateInto(step, input, start, end);
+        }
+    }
+    
+    @Override
+    public void accumulateInto(int step, DoubleMatrix input, int start, int end) {
+        for (InputGenerator generator : generators) {
+            generator.accumulateInto(step, input, start, end);
+        }
+    }
+}
@@ -14,11 +14,29 @@ public class AutoCorrelatedNoiseGenerator extends UniformNoiseGenerator {
         i = DoubleMatrix.zeros(neurons.getSize());
     }
     
-    public DoubleMatrix generate() {
-        i.muli(0.9);
-        i.addi(DoubleMatrix.rand(i.length).muli(0.1 * getScale()));
-        i.put(i.lt(0), 0);
-        i.put(i.gt(getScale()), getScale());
-        return i;
+    @Override
+    public void generateInto(int step, DoubleMatrix input, int start, int end) {
+        advance(step, start, end);
+        System.arraycopy(i.data, start, input.data, start, end - start);
     }
-}
\ No newline at end of file
+    
+    @Override
+    public void accumulateInto(int step, DoubleMatrix input, int start, int end) {
+        advance(step, start, end);
+        double[] values = input.data;
+        for (int n = start; n < end; ++n) {
+            values[n] += i.data[n];
+        }
+    }
+    
+    /** Advance the noise of neurons [start, end), each of which is updated exactly once per step. */
+    private void advance(int step, int start, int end) {
+        CounterRandom random = getRandom();
+        double scale = getScale();
+        double[] values = i.data;
+        for (int n = start; n < end; ++n) {
+            double value = 0.9 * values[n] + random.nextDouble(n, step, 0) * 0.1 * scale;
+            values[n] = Math.min(Math.max(value, 0), scale);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package expresscogs.network;
+
+/**
+ * ComputeBackend selects the numerical engine used to update the state of a neuron group, and can be
+ * chosen per Network. JBLAS is the default. All backends operate in place on the same DoubleMatrix state
+ * vectors, whose data arrays serve as the primitive view for the ARRAY and VECTOR engines, so sensors and
+ * plots read the same getters regardless of the backend.
+ * 
+ * JBLAS and ARRAY perform the same operations in the same order. VECTOR differs only in AdEx groups, whose
+ * exponential is approximated to within about 1e-14 relative error, so AdEx spike trains are not guaranteed
+ * to match the other backends bit for bit, although the difference is usually absorbed by rounding.
+ */
+public enum ComputeBackend {
+    /** Element-wise jblas matrix operations, one pass per operation. */
+    JBLAS,
+    /** A single fused scalar loop over the primitive state arrays which allocates nothing per step. */
+    ARRAY,
+    /** A single fused loop over the state arrays using SIMD lanes from the jdk.incubator.vector module.
+     * This needs the optional VectorKernels class from src-vector, built and run on JDK 16+ with
+     * --add-modules jdk.incubator.vector. */
+    VECTOR;
+    
+    private static final String VECTOR_KERNELS = "expresscogs.network.VectorKernels";
+    private static boolean kernelsLoaded;
+    private static NeuronKernels vectorKernels;
+    
+    /** Return the fastest backend available in this JVM. */
+    public static ComputeBackend fastest() {
+        return VECTOR.resolve();
+    }
+    
+    /** Return whether the backend can run in this JVM. */
+    public boolean isAvailable() {
+        if (this != VECTOR) {
+            return true;
+        }
+        return loadVectorKernels() != null;
+    }
+    
+    /** Get the kernels which implement this backend, or null if it does not use kernels. */
+    NeuronKernels getKernels() {
+        return this == VECTOR ? loadVectorKernels() : null;
+    }
+    
+    private static synchronized NeuronKernels loadVectorKernels() {
+        if (!kernelsLoaded) {
+            kernelsLoaded = true;
+            try {
+                vectorKernels = (NeuronKernels)Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                vectorKernels = null;
+            }
+        }
+        return vectorKernels;
+    }
+    
+    /** Return this backend if it is available, or the scalar ARRAY backend otherwise. */
+    public ComputeBackend resolve() {
+        return isAvailable() ? this : ARRAY;
+    }
+}
@@ -0,0 +1,48 @@
+package expresscogs.network;
+
+/**
+ * CounterRandom is a counter-based pseudo-random generator (Philox4x32-10). Each value is a pure function
+ * of the key and a counter, such as the neuron index and step, so any value can be computed independently
+ * of the others. Noise generated this way is identical however the neurons are partitioned across threads
+ * and in whatever order they are updated.
+ */
+public final class CounterRandom {
+    private static final long M0 = 0xD2511F53L;
+    private static final long M1 = 0xCD9E8D57L;
+    private static final int W0 = 0x9E3779B9;
+    private static final int W1 = 0xBB67AE85;
+    
+    private final int key0;
+    private final int key1;
+    
+    /** Create a generator keyed from the jblas random generator, so that it follows Random.seed. */
+    public CounterRandom() {
+        this(new RandomStream().nextLong());
+    }
+    
+    public CounterRandom(long key) {
+        key0 = (int)key;
+        key1 = (int)(key >>> 32);
+    }
+    
+    /** Get a uniformly distributed value in [0, 1) for the counter (index, step, channel). */
+    public double nextDouble(int index, long step, int channel) {
+        int c0 = index;
+        int c1 = (int)step;
+        int c2 = (int)(step >>> 32);
+        int c3 = channel;
+        int k0 = key0;
+        int k1 = key1;
+        for (int round = 0; round < 10; ++round) {
+            long p0 = M0 * (c0 & 0xFFFFFFFFL);
+            long p1 = M1 * (c2 & 0xFFFFFFFFL);
+            c0 = (int)(p1 >>> 32) ^ c1 ^ k0;
+            c1 = (int)p1;
+            c2 = (int)(p0 >>> 32) ^ c3 ^ k1;
+            c3 = (int)p0;
+            k0 += W0;
+            k1 += W1;
+        }
+        return (((long)(c0 >>> 11) << 32) | (c1 & 0xFFFFFFFFL)) * 0x1.0p-53;
+    }
+}
@@ -0,0 +1,230 @@
+package expresscogs.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Phaser;
+
+import expresscogs.network.synapses.SynapseGroup;
+
+/**
+ * DedicatedScheduler updates a network with its own set of long-lived worker threads, each pinned to a
+ * fixed partition of the work. The calling thread acts as the first worker. Each step runs in phases separated
+ * by a Phaser barrier, which spins briefly before parking, so the coordination cost per step is a few
+ * barrier crossings rather than task submission.
+ * 
+ * Sliceable groups are split into contiguous index slices, and the slices are divided between workers in
+ * proportion to their cost (neurons for neuron groups, synapses for synapse groups) rather than by group,
+ * so a single large population scales with the number of threads. Each step runs up to four phases:
+ * neuron preparation (or the whole update of groups which cannot be sliced), neuron slices, synapse
+ * preparation, and synapse slices.
+ */
+public class DedicatedScheduler implements NetworkScheduler {
+    private interface Task {
+        void run(int step);
+    }
+    
+    /** A sliceable group of the given size and cost per index. */
+    private static class Slice {
+        int size;
+        double cost;
+        SliceTask task;
+        
+        Slice(int size, double cost, SliceTask task) {
+            this.size = size;
+            this.cost = cost;
+            this.task = task;
+        }
+    }
+    
+    private interface SliceTask {
+        void run(int step, int start, int end);
+    }
+    
+    // Round slice boundaries to whole cache lines of doubles
+    private static final int SLICE_ALIGNMENT = 64;
+    
+    private int numThreads;
+    private List<List<List<Task>>> phases = new ArrayList<List<List<Task>>>();
+    private Phaser phaser;
+    private Thread[] workers;
+    private volatile int step;
+    private volatile boolean running;
+    private volatile Throwable failure;
+    
+    public DedicatedScheduler(int numThreads) {
+        this.numThreads = numThreads;
+    }
+    
+    /** Partition the groups between the workers. The worker threads are started on the next update. */
+    @Override
+    public void setGroups(List<NeuronGroup> neuronGroups, List<SynapseGroup> synapseGroups) {
+        shutdown();
+        phases.clear();
+        List<Task> neuronPrepares = new ArrayList<Task>();
+        List<Long> neuronPrepareCosts = new ArrayList<Long>();
+        List<Slice> neuronSlices = new ArrayList<Slice>();
+        for (NeuronGroup group : neuronGroups) {
+            neuronPrepares.add(group::prepareUpdate);
+            neuronPrepareCosts.add((long)group.getSize());
+            if (group.isSliceable()) {
+                neuronSlices.add(new Slice(group.getSize(), 1, group::updateSlice));
+            }
+        }
+        List<Task> synapsePrepares = new ArrayList<Task>();
+        List<Long> synapsePrepareCosts = new ArrayList<Long>();
+        List<Slice> synapseSlices = new ArrayList<Slice>();
+        for (SynapseGroup group : synapseGroups) {
+            synapsePrepares.add(group::prepareUpdate);
+            if (group.isSliceable()) {
+                synapsePrepareCosts.add((long)group.getSource().getSize() + group.getTarget().getSize());
+                int size = group.getTarget().getSize();
+                synapseSlices.add(new Slice(size, Math.max(1.0, (double)group.getNumSynapses() / size), group::updateSlice));
+            } else {
+                synapsePrepareCosts.add(group.getNumSynapses());
+            }
+        }
+        addPhase(balance(numThreads, neuronPrepares, neuronPrepareCosts));
+        addPhase(divide(numThreads, neuronSlices));
+        addPhase(balance(numThreads, synapsePrepares, synapsePrepareCosts));
+        addPhase(divide(numThreads, synapseSlices));
+    }
+    
+    private void start() {
+        running = true;
+        phaser = new Phaser(numThreads);
+        workers = new Thread[numThreads - 1];
+        for (int t = 1; t < numThreads; ++t) {
+            final int partition = t;
+            workers[t - 1] = new Thread(() -> work(partition), "DedicatedScheduler-" + t);
+            workers[t - 1].setDaemon(true);
+            workers[t - 1].start();
+        }
+    }
+    
+    private void addPhase(List<List<Task>> partitions) {
+        for (List<Task> tasks : partitions) {
+            if (!tasks.isEmpty()) {
+                phases.add(partitions);
+                return;
+            }
+        }
+    }
+    
+    /** Assign indivisible tasks in order of decreasing cost to the least loaded partition. */
+    private static List<List<Task>> balance(int numThreads, List<Task> tasks, List<Long> costs) {
+        List<List<Task>> partitions = createPartitions(numThreads);
+        long[] loads = new long[numThreads];
+        List<Integer> order = new ArrayList<Integer>();
+        for (int i = 0; i < tasks.size(); ++i) {
+            order.add(i);
+        }
+        order.sort((a, b) -> Long.compare(costs.get(b), costs.get(a)));
+        for (int i : order) {
+            int min = 0;
+            for (int t = 1; t < numThreads; ++t) {
+                if (loads[t] < loads[min]) {
+                    min = t;
+                }
+            }
+            partitions.get(min).add(tasks.get(i));
+            loads[min] += costs.get(i);
+        }
+        return partitions;
+    }
+    
+    /** Cut the concatenated slices into contiguous ranges of approximately equal cost per partition. */
+    private static List<List<Task>> divide(int numThreads, List<Slice> slices) {
+        List<List<Task>> partitions = createPartitions(numThreads);
+        double total = 0;
+        for (Slice slice : slices) {
+            total += slice.size * slice.cost;
+        }
+        double share = total / numThreads;
+        double capacity = share;
+        int t = 0;
+        for (Slice slice : slices) {
+            int start = 0;
+            while (start < slice.size) {
+                int end = slice.size;
+                if (t < numThreads - 1) {
+                    int count = (int)Math.ceil(capacity / slice.cost);
+                    count = Math.max(SLICE_ALIGNMENT, (count + SLICE_ALIGNMENT - 1) / SLICE_ALIGNMENT * SLICE_ALIGNMENT);
+                    end = (int)Math.min(slice.size, (long)start + count);
+                }
+                final int from = start;
+                final int to = end;
+                final SliceTask task = slice.task;
+                partitions.get(t).add(step -> task.run(step, from, to));
+                capacity -= (end - start) * slice.cost;
+                if (capacity <= 0 && t < numThreads - 1) {
+                    ++t;
+                    capacity += share;
+                }
+                start = end;
+            }
+        }
+        return partitions;
+    }
+    
+    private static List<List<Task>> createPartitions(int numThreads) {
+        List<List<Task>> partitions = new ArrayList<List<Task>>();
+        for (int t = 0; t < numThreads; ++t) {
+            partitions.add(new ArrayList<Task>());
+        }
+        return partitions;
+    }
+    
+    /** Get the number of threads, including the calling thread. */
+    public int getNumThreads() {
+        return numThreads;
+    }
+    
+    @Override
+    public void update(int step) {
+        if (!running) {
+            start();
+        }
+        this.step = step;
+        phaser.arriveAndAwaitAdvance();
+        runPhases(0);
+        if (failure != null) {
+            Throwable cause = failure;
+            failure = null;
+            throw new RuntimeException("Network update failed in a worker thread", cause);
+        }
+    }
+    
+    /** Stop the worker threads, which will be restarted by the next update. */
+    @Override
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        phaser.arriveAndDeregister();
+    }
+    
+    private void work(int partition) {
+        while (true) {
+            phaser.arriveAndAwaitAdvance();
+            if (!running) {
+                return;
+            }
+            runPhases(partition);
+        }
+    }
+    
+    private void runPhases(int partition) {
+        for (int p = 0; p < phases.size(); ++p) {
+            try {
+                List<Task> tasks = phases.get(p).get(partition);
+                for (int i = 0; i < tasks.size(); ++i) {
+                    tasks.get(i).run(step);
+                }
+            } catch (Throwable e) {
+                failure = e;
+            }
+            phaser.arriveAndAwaitAdvance();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package expresscogs.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import expresscogs.network.synapses.SynapseGroup;
+
+/**
+ * ForkJoinScheduler updates a network as work-stealing tasks in a ForkJoinPool. Groups are prepared as
+ * one task each, and sliceable groups are then recursively split into index ranges down to a grain of
+ * roughly equal cost. Idle threads steal ranges from busy ones, so a shared pool balances load both
+ * within one network and between concurrent simulations.
+ */
+public class ForkJoinScheduler implements NetworkScheduler {
+    private interface Task {
+        void run(int step);
+    }
+    
+    private interface SliceTask {
+        void run(int step, int start, int end);
+    }
+    
+    // Target cost of the smallest range, in neurons or synapses
+    private static final long GRAIN_COST = 1 << 14;
+    private static final int MIN_GRAIN = 64;
+    
+    private ForkJoinPool pool;
+    // The tasks are built once per set of groups and reinitialized each step, so a step allocates nothing
+    private StepAction stepAction = new StepAction();
+    private GroupAction[] neuronPrepares = new GroupAction[0];
+    private SliceAction[] neuronSlices = new SliceAction[0];
+    private GroupAction[] synapsePrepares = new GroupAction[0];
+    private SliceAction[] synapseSlices = new SliceAction[0];
+    // Step being updated, written before the step action is invoked and read by its tasks
+    private int step;
+    
+    public ForkJoinScheduler(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+    
+    @Override
+    public void setGroups(List<NeuronGroup> neuronGroups, List<SynapseGroup> synapseGroups) {
+        List<GroupAction> prepares = new ArrayList<GroupAction>();
+        List<SliceAction> slices = new ArrayList<SliceAction>();
+        for (NeuronGroup group : neuronGroups) {
+            prepares.add(new GroupAction(group::prepareUpdate));
+            if (group.isSliceable()) {
+                slices.add(new SliceAction(group::updateSlice, 0, group.getSize(), grain(1)));
+            }
+        }
+        neuronPrepares = prepares.toArray(new GroupAction[prepares.size()]);
+        neuronSlices = slices.toArray(new SliceAction[slices.size()]);
+        prepares.clear();
+        slices.clear();
+        for (SynapseGroup group : synapseGroups) {
+            prepares.add(new GroupAction(group::prepareUpdate));
+            if (group.isSliceable()) {
+                int size = group.getTarget().getSize();
+                slices.add(new SliceAction(group::updateSlice, 0, size, grain((double)group.getNumSynapses() / size)));
+            }
+        }
+        synapsePrepares = prepares.toArray(new GroupAction[prepares.size()]);
+        synapseSlices = slices.toArray(new SliceAction[slices.size()]);
+    }
+    
+    private static int grain(double costPerIndex) {
+        return (int)Math.max(MIN_GRAIN, GRAIN_COST / Math.max(1.0, costPerIndex));
+    }
+    
+    @Override
+    public void update(int step) {
+        // Invoking the action publishes the step to the pool threads
+        this.step = step;
+        stepAction.reinitialize();
+        pool.invoke(stepAction);
+    }
+    
+    @Override
+    public void shutdown() {}
+    
+    /** Reset completed tasks so they can run again, then run them and wait for all of them. */
+    private static void rerunAll(ForkJoinTask<?>[] tasks) {
+        for (ForkJoinTask<?> task : tasks) {
+            task.reinitialize();
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+    
+    private class StepAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        @Override
+        protected void compute() {
+            rerunAll(neuronPrepares);
+            rerunAll(neuronSlices);
+            rerunAll(synapsePrepares);
+            rerunAll(synapseSlices);
+        }
+    }
+    
+    private class GroupAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private Task update;
+        
+        GroupAction(Task update) {
+            this.update = update;
+        }
+        
+        @Override
+        protected void compute() {
+            update.run(step);
+        }
+    }
+    
+    /** SliceAction updates a range of a group, split in advance into a tree of halves down to the grain. */
+    private class SliceAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private SliceTask task;
+        private int start;
+        private int end;
+        private SliceAction[] halves;
+        
+        SliceAction(SliceTask task, int start, int end, int grain) {
+            this.task = task;
+            this.start = start;
+            this.end = end;
+            if (end - start > grain) {
+                // Split on a cache line boundary of doubles
+                int mid = ((start + end) >>> 1) & ~7;
+                if (mid <= start) {
+                    mid = (start + end) >>> 1;
+                }
+                halves = new SliceAction[] { new SliceAction(task, start, mid, grain),
+                        new SliceAction(task, mid, end, grain) };
+            }
+        }
+        
+        @Override
+        protected void compute() {
+            if (halves == null) {
+                task.run(step, start, end);
+            } else {
+                rerunAll(halves);
+            }
+        }
+    }
+}
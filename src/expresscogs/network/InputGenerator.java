@@ -1,24 +1,63 @@
 package expresscogs.network;
 
+import java.util.Arrays;
+
 import org.jblas.DoubleMatrix;
 
+/**
+ * InputGenerator produces the input current of a neuron group each step. The input is written or added
+ * into a buffer owned by the caller, so generators can be composed without allocating per step.
+ * 
+ * Each step, prepare is called once before the input of any neuron is generated. Sliceable generators
+ * produce the input of each neuron from the step and neuron index alone, so disjoint ranges of neurons
+ * may then be generated concurrently and in any order with identical results.
+ */
 public interface InputGenerator {
     public static InputGenerator createNullGenerator() {
         return new InputGenerator() {
-            private DoubleMatrix zeros;
+            @Override
+            public void setNeuronGroup(NeuronGroup neurons) {}
             
             @Override
-            public void setNeuronGroup(NeuronGroup neurons) {
-                zeros = DoubleMatrix.zeros(neurons.getSize());
+            public boolean isSliceable() {
+                return true;
             }
             
             @Override
-            public DoubleMatrix generate() {
-                return zeros;
+            public void generateInto(int step, DoubleMatrix input, int start, int end) {
+                Arrays.fill(input.data, start, end, 0);
             }
+            
+            @Override
+            public void accumulateInto(int step, DoubleMatrix input, int start, int end) {}
         };
     }
     
     void setNeuronGroup(NeuronGroup neurons);
-    DoubleMatrix generate();
+    
+    /** Get whether ranges of neurons can be generated concurrently after prepare. */
+    default boolean isSliceable() {
+        return false;
+    }
+    
+    /** Update any state shared by all neurons before the input of the given step is generated. */
+    default void prepare(int step) {}
+    
+    /** Add the input of neurons [start, end) at the given step to the buffer. */
+    void accumulateInto(int step, DoubleMatrix input, int start, int end);
+    
+    /** Write the input of neurons [start, end) at the given step into the buffer, replacing its contents. */
+    default void generateInto(int step, DoubleMatrix input, int start, int end) {
+        Arrays.fill(input.data, start, end, 0);
+        accumulateInto(step, input, start, end);
+    }
+    
+    /** Prepare and write the input of all neurons at the given step into the buffer. */
+    default void generateInto(int step, DoubleMatrix input) {
+        prepare(step);
+        generateInto(step, input, 0, input.length);
+    }
+    
+    /** Assign the random stream used by the generator. Generators without noise may ignore it. */
+    default void setRandom(RandomStream random) {}
 }
@@ -15,6 +15,8 @@ import expresscogs.network.synapses.SynapseGroup;
  *
  */
 public class LifNeuronGroup implements NeuronGroup {
+    private static final double GOLDEN_RATIO_FRACTION = 0.6180339887498949;
+    
     private List<SynapseGroup> dendriticSynapseGroups = new ArrayList<SynapseGroup>();
     private List<SynapseGroup> axonalSynapseGroups = new ArrayList<SynapseGroup>();
     private String name;
@@ -29,6 +31,7 @@ public class LifNeuronGroup implements NeuronGroup {
     private DoubleMatrix v;
     private DoubleMatrix dv;
     private DoubleMatrix spk;
+    private SpikeIndexBuffer spikeIndices;
     private double vDecay = 0.01;
     private double vRest = -70e-3;
     private double vThresh = -50e-3;
@@ -37,20 +40,37 @@ public class LifNeuronGroup implements NeuronGroup {
     private double gEMax = 4e-3;
     private double gIMax = 4e-3;
     private InputGenerator generator;
+    private ComputeBackend backend = ComputeBackend.JBLAS;
+    private NeuronKernels kernels;
+    private double[][] excitatoryInputs = new double[0][];
+    private double[][] inhibitoryInputs = new double[0][];
+    private int numExcitatoryInputs;
+    private int numInhibitoryInputs;
 
     public LifNeuronGroup(String name, int size, boolean excitatory, InputGenerator generator) {
+        this(name, size, excitatory, generator, new RandomStream());
+    }
+    
+    /** Create a group whose initial potentials are drawn from the given stream. */
+    public LifNeuronGroup(String name, int size, boolean excitatory, InputGenerator generator, RandomStream random) {
         this.name = name;
         this.size = size;
         this.excitatory = excitatory;
+        // Neurons are ordered along x for the 1D topologies and spread over y by the golden ratio sequence,
+        // so that the (x, y) positions cover the unit square evenly for the 2D topologies and sensors
         x = DoubleMatrix.linspace(0, 1, size);
-        y = DoubleMatrix.linspace(0, 1, size);
+        y = new DoubleMatrix(size);
+        for (int n = 0; n < size; ++n) {
+            y.put(n, (n * GOLDEN_RATIO_FRACTION) % 1);
+        }
         i = DoubleMatrix.zeros(size);
         gE = DoubleMatrix.zeros(size);
         gI = DoubleMatrix.zeros(size);
         gL = DoubleMatrix.zeros(size);
-        v = DoubleMatrix.ones(size).muli(vRest).addi(DoubleMatrix.rand(size).muli(vThresh - vRest));
+        v = DoubleMatrix.ones(size).muli(vRest).addi(random.rand(size, 1).muli(vThresh - vRest));
         dv = DoubleMatrix.zeros(size);
         spk = DoubleMatrix.zeros(size);
+        spikeIndices = new SpikeIndexBuffer(size);
         this.generator = generator;
     }
 
@@ -62,6 +82,8 @@ public class LifNeuronGroup implements NeuronGroup {
     @Override
     public void addDendriticSynapseGroup(SynapseGroup group) {
         dendriticSynapseGroups.add(group);
+        excitatoryInputs = new double[dendriticSynapseGroups.size()][];
+        inhibitoryInputs = new double[dendriticSynapseGroups.size()][];
     }
 
     @Override
@@ -69,13 +91,72 @@ public class LifNeuronGroup implements NeuronGroup {
         axonalSynapseGroups.add(group);
     }
 
+    /** Get the engine used to update the neuron group. */
+    @Override
+    public ComputeBackend getBackend() {
+        return backend;
+    }
+    
+    /** Set the engine used to update the neuron group. The VECTOR backend falls back to ARRAY if the
+     * Vector API is not available. */
+    @Override
+    public void setBackend(ComputeBackend value) {
+        backend = value.resolve();
+        kernels = backend.getKernels();
+    }
+    
+    @Override
+    public void setRandom(RandomStream random) {
+        generator.setRandom(random);
+    }
+
     @Override
     public void update(int step) {
+        prepareUpdate(step);
+        updateSlice(step, 0, size);
+    }
+    
+    @Override
+    public boolean isSliceable() {
+        return backend != ComputeBackend.JBLAS;
+    }
+    
+    @Override
+    public void prepareUpdate(int step) {
+        if (backend == ComputeBackend.JBLAS) {
+            updateMatrices(step);
+        } else {
+            gatherInputs(step);
+        }
+    }
+    
+    @Override
+    public void updateSlice(int step, int start, int end) {
+        if (backend == ComputeBackend.JBLAS) {
+            return;
+        }
+        if (generator.isSliceable()) {
+            generator.generateInto(step, i, start, end);
+        }
+        int[] indices = spikeIndices.getSliceArray();
+        int offset = start;
+        int n = start;
+        if (backend == ComputeBackend.VECTOR) {
+            n = start + kernels.loopBound(end - start);
+            offset = kernels.integrateLif(v.data, gE.data, gI.data, gL.data, dv.data, spk.data, i.data,
+                    excitatoryInputs, numExcitatoryInputs, inhibitoryInputs, numInhibitoryInputs,
+                    vThresh, vRest, vDecay, 1 - gEDecay, 1 - gIDecay, gEMax, gIMax, indices, offset, start, n);
+        }
+        offset = integrateArrays(n, end, indices, offset);
+        spikeIndices.endSlice(start, end, offset - start);
+    }
+    
+    private void updateMatrices(int step) {
+        generator.generateInto(step, i);
         v.gti(vThresh, spk);
         v.put(spk, vRest);
         gE.put(spk, 0);
         gI.put(spk, 0);
-        i = generator.generate();
         gE.muli(1 - gEDecay);
         gI.muli(1 - gIDecay);
         for (SynapseGroup synapses : dendriticSynapseGroups) {
@@ -91,6 +172,77 @@ public class LifNeuronGroup implements NeuronGroup {
         v.subi(vRest, gL).muli(-vDecay);
         gL.addi(gE, dv).subi(gI).addi(i);
         v.addi(dv);
+        spikeIndices.setSpikes(spk.data);
+    }
+    
+    /** Prepare the input currents, generating them here unless each slice can generate its own, and collect
+     * the conductance arrays of the dendritic synapse groups. */
+    private void gatherInputs(int step) {
+        generator.prepare(step);
+        if (!generator.isSliceable()) {
+            generator.generateInto(step, i, 0, size);
+        }
+        numExcitatoryInputs = 0;
+        numInhibitoryInputs = 0;
+        for (int k = 0; k < dendriticSynapseGroups.size(); ++k) {
+            SynapseGroup synapses = dendriticSynapseGroups.get(k);
+            if (synapses.getSource().isExcitatory()) {
+                excitatoryInputs[numExcitatoryInputs++] = synapses.getConductances(step).data;
+            } else {
+                inhibitoryInputs[numInhibitoryInputs++] = synapses.getConductances(step).data;
+            }
+        }
+    }
+    
+    /** Update neurons [start, end) in a single pass over the state arrays, appending the index of each
+     * spiking neuron to indices from offset and returning the new offset. The arithmetic is performed in
+     * the same order as updateMatrices, so both engines produce identical spike trains. */
+    private int integrateArrays(int start, int end, int[] indices, int offset) {
+        double[] v = this.v.data;
+        double[] gE = this.gE.data;
+        double[] gI = this.gI.data;
+        double[] gL = this.gL.data;
+        double[] dv = this.dv.data;
+        double[] spk = this.spk.data;
+        double[] in = i.data;
+        double gERetain = 1 - gEDecay;
+        double gIRetain = 1 - gIDecay;
+        for (int n = start; n < end; ++n) {
+            double vn = v[n];
+            double ge = gE[n];
+            double gi = gI[n];
+            if (vn > vThresh) {
+                spk[n] = 1;
+                indices[offset++] = n;
+                vn = vRest;
+                ge = 0;
+                gi = 0;
+            } else {
+                spk[n] = 0;
+            }
+            ge *= gERetain;
+            gi *= gIRetain;
+            for (int k = 0; k < numExcitatoryInputs; ++k) {
+                ge += excitatoryInputs[k][n];
+            }
+            for (int k = 0; k < numInhibitoryInputs; ++k) {
+                gi += inhibitoryInputs[k][n];
+            }
+            if (ge > gEMax) {
+                ge = gEMax;
+            }
+            if (gi > gIMax) {
+                gi = gIMax;
+            }
+            double gl = (vn - vRest) * -vDecay;
+            double d = gl + ge - gi + in[n];
+            gE[n] = ge;
+            gI[n] = gi;
+            gL[n] = gl;
+            dv[n] = d;
+            v[n] = vn + d;
+        }
+        return offset;
     }
 
     @Override
@@ -142,4 +294,14 @@ public class LifNeuronGroup implements NeuronGroup {
     public DoubleMatrix getSpikes() {
         return spk;
     }
+
+    @Override
+    public int[] getSpikeIndices() {
+        return spikeIndices.getIndices();
+    }
+
+    @Override
+    public int getSpikeCount() {
+        return spikeIndices.getCount();
+    }
 }
@@ -0,0 +1,259 @@
+package expresscogs.network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+
+import org.jblas.DoubleMatrix;
+
+import expresscogs.network.TopologicalStimulusGenerator.Shape;
+
+/**
+ * MultiChannelStimulusGenerator generates input to a neuron group from a random noise term combined with
+ * several position-based stimuli. Each channel has its own shape and width, and its position and intensity
+ * are functions of the step, so stimuli can drift smoothly and compete with each other.
+ *
+ * Each step, the channels are evaluated together in one pass over the neurons within their supports, and
+ * only the neurons which were stimulated in the previous step are reset, so the cost grows with the
+ * footprint of the stimuli rather than the number of channels times the number of neurons. This requires
+ * the neuron positions to be sorted; otherwise every neuron is evaluated.
+ */
+public class MultiChannelStimulusGenerator implements InputGenerator {
+    /** Channel is a single stimulus with a trajectory and an intensity schedule. */
+    public static class Channel {
+        private Shape shape;
+        private double width;
+        private IntToDoubleFunction trajectory;
+        private IntToDoubleFunction intensity;
+        private double center;
+        private double height;
+        private double support;
+        private int start;
+        private int end;
+
+        private Channel(Shape shape, double width, IntToDoubleFunction trajectory, IntToDoubleFunction intensity) {
+            this.shape = shape;
+            this.width = width;
+            this.trajectory = trajectory;
+            this.intensity = intensity;
+        }
+
+        /** Get the shape of the stimulus. */
+        public Shape getShape() {
+            return shape;
+        }
+
+        /** Set the shape of the stimulus. */
+        public void setShape(Shape value) {
+            shape = value;
+        }
+
+        /** Get the width of the stimulus in neuronal coordinates. */
+        public double getWidth() {
+            return width;
+        }
+
+        /** Set the width of the stimulus in neuronal coordinates. */
+        public void setWidth(double value) {
+            width = value;
+        }
+
+        /** Set the position of the center of the stimulus as a function of the step. */
+        public void setTrajectory(IntToDoubleFunction value) {
+            trajectory = value;
+        }
+
+        /** Set the activation at the center of the stimulus as a function of the step. */
+        public void setIntensity(IntToDoubleFunction value) {
+            intensity = value;
+        }
+
+        /** Get the position of the center of the stimulus in the current step. */
+        public double getPosition() {
+            return center;
+        }
+
+        /** Get the activation at the center of the stimulus in the current step. */
+        public double getIntensity() {
+            return height;
+        }
+    }
+
+    /** Create a schedule which is constant over time. */
+    public static IntToDoubleFunction constant(double value) {
+        return step -> value;
+    }
+
+    /** Create a schedule which oscillates around center with the given amplitude and period in steps. */
+    public static IntToDoubleFunction sinusoid(double center, double amplitude, double period, double phase) {
+        return step -> center + amplitude * Math.sin(2 * Math.PI * step / period + phase);
+    }
+
+    private List<Channel> channels = new ArrayList<Channel>();
+    private DoubleMatrix neuronPositions;
+    private DoubleMatrix stimulus;
+    private boolean sortedPositions;
+    private double noise = 1e-3;
+    private CounterRandom random = new CounterRandom();
+    private int[] stimulated = new int[0];
+    private int numStimulated;
+    private int[] boundaries = new int[0];
+    private Channel[] active = new Channel[0];
+
+    /** Add a channel with the given shape, width, trajectory and intensity schedule. */
+    public Channel addChannel(Shape shape, double width, IntToDoubleFunction trajectory,
+            IntToDoubleFunction intensity) {
+        Channel channel = new Channel(shape, width, trajectory, intensity);
+        channels.add(channel);
+        stimulated = new int[2 * channels.size()];
+        boundaries = new int[2 * channels.size()];
+        active = new Channel[channels.size()];
+        return channel;
+    }
+
+    /** Remove a channel. The neurons it stimulated are reset in the next step. */
+    public void removeChannel(Channel channel) {
+        channels.remove(channel);
+    }
+
+    public List<Channel> getChannels() {
+        return channels;
+    }
+
+    /** Return the scale of random noise added to the stimulus each update. */
+    public double getNoise() {
+        return noise;
+    }
+
+    /** Assign the scale of random noise added to the stimulus each update. */
+    public void setNoise(double value) {
+        noise = value;
+        if (stimulus != null) {
+            stimulus.fill(noise);
+            numStimulated = 0;
+        }
+    }
+
+    @Override
+    public void setNeuronGroup(NeuronGroup neurons) {
+        neuronPositions = neurons.getXPosition();
+        stimulus = DoubleMatrix.zeros(neuronPositions.length).fill(noise);
+        sortedPositions = true;
+        for (int n = 1; n < neuronPositions.length; ++n) {
+            sortedPositions &= neuronPositions.data[n - 1] <= neuronPositions.data[n];
+        }
+        numStimulated = 0;
+    }
+
+    @Override
+    public void setRandom(RandomStream random) {
+        this.random = new CounterRandom(random.nextLong());
+    }
+
+    @Override
+    public boolean isSliceable() {
+        return true;
+    }
+
+    @Override
+    public void prepare(int step) {
+        for (Channel channel : channels) {
+            channel.center = channel.trajectory.applyAsDouble(step);
+            channel.height = channel.intensity.applyAsDouble(step);
+            channel.support = channel.shape.getSupport(channel.width);
+        }
+        if (!sortedPositions) {
+            evaluate(0, neuronPositions.length, channels.toArray(active), channels.size());
+            return;
+        }
+        // Return the neurons stimulated in the previous step to the noise level
+        double[] values = stimulus.data;
+        for (int k = 0; k < numStimulated; k += 2) {
+            Arrays.fill(values, stimulated[k], stimulated[k + 1], noise);
+        }
+        numStimulated = 0;
+        int numBoundaries = 0;
+        for (Channel channel : channels) {
+            channel.start = lowerBound(channel.center - channel.support);
+            channel.end = lowerBound(Math.nextUp(channel.center + channel.support));
+            if (channel.start < channel.end) {
+                boundaries[numBoundaries++] = channel.start;
+                boundaries[numBoundaries++] = channel.end;
+            }
+        }
+        Arrays.sort(boundaries, 0, numBoundaries);
+        // Between consecutive boundaries the set of channels covering the neurons is constant
+        for (int b = 0; b + 1 < numBoundaries; ++b) {
+            int start = boundaries[b];
+            int end = boundaries[b + 1];
+            if (start == end) {
+                continue;
+            }
+            int numActive = 0;
+            for (Channel channel : channels) {
+                if (channel.start <= start && end <= channel.end) {
+                    active[numActive++] = channel;
+                }
+            }
+            if (numActive == 0) {
+                continue;
+            }
+            evaluate(start, end, active, numActive);
+            if (numStimulated > 0 && stimulated[numStimulated - 1] == start) {
+                stimulated[numStimulated - 1] = end;
+            } else {
+                stimulated[numStimulated++] = start;
+                stimulated[numStimulated++] = end;
+            }
+        }
+    }
+
+    /** Set the stimulus of neurons [start, end) to the noise level plus the sum of the first count channels. */
+    private void evaluate(int start, int end, Channel[] covering, int count) {
+        double[] x = neuronPositions.data;
+        double[] values = stimulus.data;
+        for (int n = start; n < end; ++n) {
+            double value = noise;
+            for (int k = 0; k < count; ++k) {
+                Channel channel = covering[k];
+                value += channel.shape.evaluate(x[n], channel.center, channel.width, channel.height);
+            }
+            values[n] = value;
+        }
+    }
+
+    @Override
+    public void generateInto(int step, DoubleMatrix input, int start, int end) {
+        double[] values = input.data;
+        double[] scale = stimulus.data;
+        for (int n = start; n < end; ++n) {
+            values[n] = random.nextDouble(n, step, 0) * scale[n];
+        }
+    }
+
+    @Override
+    public void accumulateInto(int step, DoubleMatrix input, int start, int end) {
+        double[] values = input.data;
+        double[] scale = stimulus.data;
+        for (int n = start; n < end; ++n) {
+            values[n] += random.nextDouble(n, step, 0) * scale[n];
+        }
+    }
+
+    /** Get the index of the first neuron at or beyond position x, given sorted positions. */
+    private int lowerBound(double x) {
+        double[] positions = neuronPositions.data;
+        int low = 0;
+        int high = positions.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (positions[mid] < x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -1,53 +1,88 @@
 package expresscogs.network;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import expresscogs.network.synapses.SynapseGroup;
 
 public class Network {
-    public static void setUpdateThreads(int numThreads) {
-        if (numThreads < 2) {
-            shutdownUpdater();
-        } else {
-            executor = Executors.newFixedThreadPool(numThreads);
-        }
+    private List<NeuronGroup> neuronGroups = new ArrayList<NeuronGroup>();
+    private List<SynapseGroup> synapseGroups = new ArrayList<SynapseGroup>();
+    private NetworkScheduler scheduler = NetworkScheduler.serial();
+    private ComputeBackend backend;
+    private long seed;
+    private RandomStream random;
+    
+    public Network() {
+        this(ComputeBackend.JBLAS);
+    }
+    
+    public Network(ComputeBackend backend) {
+        this.backend = backend;
+        setSeed(new RandomStream().nextLong());
+        scheduler.setGroups(neuronGroups, synapseGroups);
+    }
+    
+    /** Get the engine used to update the neuron groups of the network. */
+    public ComputeBackend getBackend() {
+        return backend;
     }
     
-    public static void shutdownUpdater() {
-        if (executor == null) {
-            return;
+    /** Set the engine used to update the neuron groups of the network, including groups which have
+     * already been added. */
+    public void setBackend(ComputeBackend value) {
+        backend = value;
+        for (NeuronGroup neurons : neuronGroups) {
+            neurons.setBackend(value);
         }
-        executor.shutdown();
-        try {
-            executor.awaitTermination(1, TimeUnit.SECONDS);
-            executor = null;
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        scheduler.setGroups(neuronGroups, synapseGroups);
+    }
+    
+    /** Get the seed from which the random streams of the neuron groups are split. */
+    public long getSeed() {
+        return seed;
+    }
+    
+    /** Set the seed from which the random streams of the neuron groups are split, reseeding groups which
+     * have already been added. Networks with equal seeds and structure generate equal inputs. */
+    public void setSeed(long value) {
+        seed = value;
+        random = new RandomStream(value);
+        for (NeuronGroup neurons : neuronGroups) {
+            neurons.setRandom(random.split());
         }
     }
     
-    private static ExecutorService executor;
+    /** Split a new stream from the seed of the network, from which groups constructed for the network draw
+     * their initial state and connections. Networks built in the same order from equal seeds are equal. */
+    public RandomStream splitRandom() {
+        return random.split();
+    }
     
-    private List<NeuronGroup> neuronGroups = new ArrayList<NeuronGroup>();
-    private List<SynapseGroup> synapseGroups = new ArrayList<SynapseGroup>();
-    private List<Callable<Void>> neuronGroupUpdaters = new LinkedList<Callable<Void>>();
-    private List<Callable<Void>> synapseGroupUpdaters = new LinkedList<Callable<Void>>();
-    private int step; 
+    /** Get the scheduler which updates the groups of the network. */
+    public NetworkScheduler getScheduler() {
+        return scheduler;
+    }
+    
+    /** Set the scheduler which updates the groups of the network, shutting down the previous scheduler. */
+    public void setScheduler(NetworkScheduler value) {
+        scheduler.shutdown();
+        scheduler = value;
+        scheduler.setGroups(neuronGroups, synapseGroups);
+    }
+    
+    /** Release any threads held by the scheduler of the network. */
+    public void shutdown() {
+        scheduler.shutdown();
+    }
     
     public void addNeuronGroups(NeuronGroup... groups) {
         for (NeuronGroup neurons : groups) {
+            neurons.setBackend(backend);
+            neurons.setRandom(random.split());
             neuronGroups.add(neurons);
-            neuronGroupUpdaters.add(() -> {
-                neurons.update(step);
-                return null;
-            });
         }
+        scheduler.setGroups(neuronGroups, synapseGroups);
     }
     
     public List<NeuronGroup> getNeuronGroups() {
@@ -70,11 +105,8 @@ public class Network {
     public void addSynapseGroups(SynapseGroup... groups) {
         for (SynapseGroup synapses : groups) {
             synapseGroups.add(synapses);
-            synapseGroupUpdaters.add(() -> {
-                synapses.update(step);
-                return null;
-            });
         }
+        scheduler.setGroups(neuronGroups, synapseGroups);
     }
     
     public List<SynapseGroup> getSynapseGroups() {
@@ -95,29 +127,6 @@ public class Network {
     }
     
     public void update(int step) {
-        this.step = step;
-        if (executor == null) {
-            serialUpdate();
-        } else {
-            parallelUpdate();
-        }
-    }
-    
-    public void parallelUpdate() {
-        try {
-            executor.invokeAll(neuronGroupUpdaters);
-            executor.invokeAll(synapseGroupUpdaters);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
-    }
-    
-    public void serialUpdate() {
-        for (NeuronGroup neurons : neuronGroups) {
-            neurons.update(step);
-        }
-        for (SynapseGroup synapses : synapseGroups) {
-            synapses.update(step);
-        }
+        scheduler.update(step);
     }
 }
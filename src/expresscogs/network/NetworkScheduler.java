@@ -0,0 +1,46 @@
+package expresscogs.network;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import expresscogs.network.synapses.SynapseGroup;
+
+/**
+ * NetworkScheduler decides how the neuron and synapse groups of a Network are updated each step. Each
+ * Network owns its scheduler, so concurrent simulations do not share any global update state.
+ */
+public interface NetworkScheduler {
+    /** Create a scheduler which updates every group on the calling thread. */
+    public static NetworkScheduler serial() {
+        return new SerialScheduler();
+    }
+    
+    /** Create a scheduler which updates groups and slices of groups as work-stealing tasks in the common
+     * fork-join pool, so that many concurrent simulations share the available cores. */
+    public static NetworkScheduler forkJoin() {
+        return new ForkJoinScheduler(ForkJoinPool.commonPool());
+    }
+    
+    /** Create a scheduler which updates groups and slices of groups as work-stealing tasks in the given pool. */
+    public static NetworkScheduler forkJoin(ForkJoinPool pool) {
+        return new ForkJoinScheduler(pool);
+    }
+    
+    /** Create a scheduler with its own pool of worker threads pinned to fixed partitions of the network.
+     * With fewer than 2 threads the network is updated serially. */
+    public static NetworkScheduler dedicated(int numThreads) {
+        if (numThreads < 2) {
+            return serial();
+        }
+        return new DedicatedScheduler(numThreads);
+    }
+    
+    /** Assign the groups to be updated. Called whenever the groups of the network or their backends change. */
+    void setGroups(List<NeuronGroup> neuronGroups, List<SynapseGroup> synapseGroups);
+    
+    /** Update all neuron groups, then all synapse groups, returning when the step is complete. */
+    void update(int step);
+    
+    /** Release any threads held by the scheduler. */
+    void shutdown();
+}
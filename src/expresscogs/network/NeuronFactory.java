@@ -14,10 +14,18 @@ public final class NeuronFactory {
         return create(NeuronModel.LIF, name, size, true, new UniformNoiseGenerator(noiseScale));
     }
     
+    public static NeuronGroup createLifExcitatory(String name, int size, double noiseScale, RandomStream random) {
+        return create(NeuronModel.LIF, name, size, true, new UniformNoiseGenerator(noiseScale), random);
+    }
+    
     public static NeuronGroup createLifExcitatory(String name, int size, InputGenerator generator) {
         return create(NeuronModel.LIF, name, size, true, generator);
     }
     
+    public static NeuronGroup createLifExcitatory(String name, int size, InputGenerator generator, RandomStream random) {
+        return create(NeuronModel.LIF, name, size, true, generator, random);
+    }
+    
     public static NeuronGroup createLifInhibitory(String name, int size) {
         return create(NeuronModel.LIF, name, size, false, InputGenerator.createNullGenerator());
     }
@@ -26,16 +34,38 @@ public final class NeuronFactory {
         return create(NeuronModel.LIF, name, size, false, new UniformNoiseGenerator(noiseScale));
     }
     
+    public static NeuronGroup createLifInhibitory(String name, int size, double noiseScale, RandomStream random) {
+        return create(NeuronModel.LIF, name, size, false, new UniformNoiseGenerator(noiseScale), random);
+    }
+    
     public static NeuronGroup createLifInhibitory(String name, int size, InputGenerator generator) {
         return create(NeuronModel.LIF, name, size, false, generator);
     }
     
+    public static NeuronGroup createLifInhibitory(String name, int size, InputGenerator generator, RandomStream random) {
+        return create(NeuronModel.LIF, name, size, false, generator, random);
+    }
+    
+    public static PoissonNeuronGroup createPoissonExcitatory(String name, int size, double rate) {
+        return new PoissonNeuronGroup(name, size, true, rate);
+    }
+    
+    public static PoissonNeuronGroup createPoissonInhibitory(String name, int size, double rate) {
+        return new PoissonNeuronGroup(name, size, false, rate);
+    }
+    
     public static NeuronGroup create(NeuronModel model, String name, int size, boolean excitatory, InputGenerator generator) {
+        return create(model, name, size, excitatory, generator, new RandomStream());
+    }
+    
+    /** Create a group whose initial state is drawn from the given stream, e.g. one split from a Network. */
+    public static NeuronGroup create(NeuronModel model, String name, int size, boolean excitatory, InputGenerator generator,
+            RandomStream random) {
         NeuronGroup neurons;
         if (model == NeuronModel.ADEX) {
-            neurons = new AdExNeuronGroup(name, size, excitatory, generator);
+            neurons = new AdExNeuronGroup(name, size, excitatory, generator, random);
         } else {
-            neurons = new LifNeuronGroup(name, size, excitatory, generator);
+            neurons = new LifNeuronGroup(name, size, excitatory, generator, random);
         }
         generator.setNeuronGroup(neurons);
         return neurons;
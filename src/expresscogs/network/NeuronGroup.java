@@ -4,32 +4,35 @@ import org.jblas.DoubleMatrix;
 
 import expresscogs.network.synapses.SynapseGroup;
 
-public interface NeuronGroup {
-    String getName();
-
+public interface NeuronGroup extends NeuronGroupState {
     void addDendriticSynapseGroup(SynapseGroup group);
 
     void addAxonalSynapseGroup(SynapseGroup group);
 
     void update(int step);
 
-    int getSize();
-
-    boolean isExcitatory();
+    /** Return whether the group can be updated in slices by prepareUpdate and updateSlice. */
+    default boolean isSliceable() {
+        return false;
+    }
 
-    DoubleMatrix getXPosition();
+    /** Begin a step which will be completed by calls to updateSlice on disjoint ranges covering the group.
+     * Groups which are not sliceable perform the whole update here. */
+    default void prepareUpdate(int step) {
+        update(step);
+    }
 
-    DoubleMatrix getYPosition();
+    /** Update neurons [start, end) after prepareUpdate. Slices may be updated concurrently. */
+    default void updateSlice(int step, int start, int end) {}
 
-    DoubleMatrix getExcitatoryConductance();
+    ComputeBackend getBackend();
 
-    DoubleMatrix getInhibitoryConductance();
-    
-    DoubleMatrix getLeakConductance();
+    void setBackend(ComputeBackend value);
     
+    /** Assign the random stream used to generate the input of the neuron group. */
+    void setRandom(RandomStream random);
+
     DoubleMatrix getInputs();
 
     DoubleMatrix getPotentials();
-
-    DoubleMatrix getSpikes();
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package expresscogs.network;
+
+import org.jblas.DoubleMatrix;
+
+/**
+ * NeuronGroupState is the read-only state of a neuron group after an update, which is all that sensors and
+ * recorders need. It is implemented by every NeuronGroup and by the snapshots of a SensorPipeline.
+ */
+public interface NeuronGroupState {
+    String getName();
+
+    int getSize();
+
+    boolean isExcitatory();
+
+    DoubleMatrix getXPosition();
+
+    DoubleMatrix getYPosition();
+
+    DoubleMatrix getExcitatoryConductance();
+
+    DoubleMatrix getInhibitoryConductance();
+    
+    DoubleMatrix getLeakConductance();
+
+    DoubleMatrix getSpikes();
+
+    /** Get the ascending indices of the neurons which spiked in the last update. Only the first
+     * getSpikeCount() entries are valid, and the array is reused between steps. */
+    int[] getSpikeIndices();
+
+    /** Get the number of neurons which spiked in the last update. */
+    int getSpikeCount();
+}
@@ -0,0 +1,29 @@
+package expresscogs.network;
+
+/**
+ * NeuronKernels is the interface to the fused neuron group updates of the VECTOR backend. The
+ * implementation, VectorKernels, uses the jdk.incubator.vector module, so it is kept in the separate
+ * src-vector source folder and loaded by name when the backend is resolved. The rest of the project
+ * therefore builds and runs on Java 8.
+ *
+ * Each kernel processes [start, end), where end - start must be a multiple of the vector length (see
+ * loopBound), leaving the remaining tail to the scalar implementation. The index of each spiking neuron is
+ * appended to an index array and the kernel returns the new offset.
+ */
+interface NeuronKernels {
+    /** Get the largest multiple of the vector length which is no greater than length. */
+    int loopBound(int length);
+    
+    /** Fused leaky integrate-and-fire update, see LifNeuronGroup. */
+    int integrateLif(double[] v, double[] gE, double[] gI, double[] gL, double[] dv, double[] spk, double[] in,
+            double[][] excitatoryInputs, int numExcitatory, double[][] inhibitoryInputs, int numInhibitory,
+            double vThresh, double vRest, double vDecay, double gERetain, double gIRetain, double gEMax,
+            double gIMax, int[] indices, int offset, int start, int end);
+    
+    /** Fused adaptive exponential integrate-and-fire update, see AdExNeuronGroup. */
+    int integrateAdEx(double[] v, double[] w, double[] gE, double[] gI, double[] dv, double[] dw, double[] spk,
+            double[] in, double[][] excitatoryInputs, int numExcitatory, double[][] inhibitoryInputs,
+            int numInhibitory, double vCut, double vR, double b, double gEDecay, double gIDecay, double vT,
+            double deltaT, double gL, double eL, double a, double dtOverC, double dtOverTauW, int[] indices,
+            int offset, int start, int end);
+}
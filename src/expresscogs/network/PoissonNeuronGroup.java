@@ -0,0 +1,277 @@
+package expresscogs.network;
+
+import org.jblas.DoubleMatrix;
+
+import expresscogs.network.TopologicalStimulusGenerator.Shape;
+import expresscogs.network.synapses.SynapseGroup;
+
+/**
+ * PoissonNeuronGroup represents a population of independent Poisson spike sources which can drive other
+ * neuron groups through synapse groups. Each neuron fires with a background rate plus an optional
+ * position-dependent rate map described by a stimulus shape, all of which may be changed between steps.
+ *
+ * Spikes are sampled by skipping directly from one spiking neuron to the next with geometrically
+ * distributed gaps at the peak spike probability, then thinning each candidate to its own probability, so
+ * the cost of a step is proportional to the number of spikes rather than the size of the group. The spike
+ * probability of a neuron in a step is its rate times the time step, capped at 1.
+ *
+ * The time step is a property of the group rather than of the network, which does not know the step of
+ * its simulation. It defaults to the 1 ms step of Simulation and must be set to match any other step.
+ */
+public class PoissonNeuronGroup implements NeuronGroup {
+    private static final double GOLDEN_RATIO_FRACTION = 0.6180339887498949;
+    
+    private String name;
+    private int size;
+    private boolean excitatory;
+    private DoubleMatrix x;
+    private DoubleMatrix y;
+    private DoubleMatrix zeros;
+    private DoubleMatrix rates;
+    private DoubleMatrix spk;
+    private SpikeIndexBuffer spikeIndices;
+    private int[] previousSpikes;
+    private int numPreviousSpikes;
+    private RandomStream random = new RandomStream();
+    private ComputeBackend backend = ComputeBackend.JBLAS;
+    private double dt = 1e-3;
+    private double backgroundRate;
+    private Shape shape = Shape.GAUSSIAN;
+    private double position = 0.5;
+    private double width = 0.125;
+    private double peakRate = 0;
+    private double maxRate;
+    private boolean ratesChanged = true;
+
+    public PoissonNeuronGroup(String name, int size, boolean excitatory, double rate) {
+        this.name = name;
+        this.size = size;
+        this.excitatory = excitatory;
+        backgroundRate = rate;
+        // Neurons are ordered along x for the 1D topologies and spread over y by the golden ratio sequence,
+        // so that the (x, y) positions cover the unit square evenly for the 2D topologies and sensors
+        x = DoubleMatrix.linspace(0, 1, size);
+        y = new DoubleMatrix(size);
+        for (int n = 0; n < size; ++n) {
+            y.put(n, (n * GOLDEN_RATIO_FRACTION) % 1);
+        }
+        zeros = DoubleMatrix.zeros(size);
+        rates = DoubleMatrix.zeros(size);
+        spk = DoubleMatrix.zeros(size);
+        spikeIndices = new SpikeIndexBuffer(size);
+        previousSpikes = new int[size];
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /** Poisson sources have no dendrites, so they cannot be the target of a synapse group. */
+    @Override
+    public void addDendriticSynapseGroup(SynapseGroup group) {
+        throw new UnsupportedOperationException("Poisson neuron group " + name + " cannot receive synapses");
+    }
+
+    @Override
+    public void addAxonalSynapseGroup(SynapseGroup group) {}
+
+    @Override
+    public void update(int step) {
+        if (ratesChanged) {
+            updateRates();
+        }
+        double[] spikes = spk.data;
+        for (int n = 0; n < numPreviousSpikes; ++n) {
+            spikes[previousSpikes[n]] = 0;
+        }
+        int[] indices = spikeIndices.getSliceArray();
+        int count = 0;
+        double pMax = Math.min(maxRate * dt, 1);
+        if (pMax > 0) {
+            double[] r = rates.data;
+            double logMiss = Math.log1p(-pMax);
+            // Candidates at the peak probability are thinned to the probability of each neuron
+            for (long n = skip(logMiss); n < size; n += 1 + skip(logMiss)) {
+                int k = (int)n;
+                double p = Math.min(r[k] * dt, 1);
+                if (p >= pMax || random.nextDouble() * pMax < p) {
+                    spikes[k] = 1;
+                    indices[count] = k;
+                    previousSpikes[count] = k;
+                    ++count;
+                }
+            }
+        }
+        numPreviousSpikes = count;
+        spikeIndices.endSlice(0, size, count);
+    }
+
+    private long skip(double logMiss) {
+        if (logMiss == Double.NEGATIVE_INFINITY) {
+            return 0;
+        }
+        return (long)Math.floor(Math.log(1 - random.nextDouble()) / logMiss);
+    }
+
+    private void updateRates() {
+        if (peakRate == 0) {
+            rates.fill(backgroundRate);
+        } else {
+            rates.copy(shape.generate(x, position, width, peakRate));
+            rates.addi(backgroundRate);
+        }
+        maxRate = rates.max();
+        ratesChanged = false;
+    }
+
+    /** Get the simulation time step in seconds. */
+    public double getTimeStep() {
+        return dt;
+    }
+
+    /** Set the simulation time step in seconds, which must match the step of the simulation. */
+    public void setTimeStep(double value) {
+        dt = value;
+    }
+
+    /** Get the firing rate of every neuron, in Hz, in addition to the rate map. */
+    public double getBackgroundRate() {
+        return backgroundRate;
+    }
+
+    /** Set the firing rate of every neuron, in Hz, in addition to the rate map. */
+    public void setBackgroundRate(double value) {
+        backgroundRate = value;
+        ratesChanged = true;
+    }
+
+    /** Get the shape of the rate map. */
+    public Shape getShape() {
+        return shape;
+    }
+
+    /** Set the shape of the rate map. */
+    public void setShape(Shape value) {
+        shape = value;
+        ratesChanged = true;
+    }
+
+    /** Get the x position of the center of the rate map. */
+    public double getPosition() {
+        return position;
+    }
+
+    /** Set the x position of the center of the rate map. */
+    public void setPosition(double value) {
+        position = value;
+        ratesChanged = true;
+    }
+
+    /** Get the width of the rate map in neuronal coordinates. */
+    public double getWidth() {
+        return width;
+    }
+
+    /** Set the width of the rate map in neuronal coordinates. */
+    public void setWidth(double value) {
+        width = value;
+        ratesChanged = true;
+    }
+
+    /** Get the additional firing rate, in Hz, at the center of the rate map. */
+    public double getPeakRate() {
+        return peakRate;
+    }
+
+    /** Set the additional firing rate, in Hz, at the center of the rate map. A value of zero disables the
+     * rate map. */
+    public void setPeakRate(double value) {
+        peakRate = value;
+        ratesChanged = true;
+    }
+
+    /** Get the current firing rate of each neuron in Hz. */
+    public DoubleMatrix getRates() {
+        if (ratesChanged) {
+            updateRates();
+        }
+        return rates;
+    }
+
+    @Override
+    public ComputeBackend getBackend() {
+        return backend;
+    }
+
+    /** The backend is recorded but has no effect, as sampling does not depend on the group size. */
+    @Override
+    public void setBackend(ComputeBackend value) {
+        backend = value.resolve();
+    }
+
+    @Override
+    public void setRandom(RandomStream random) {
+        this.random = random;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public boolean isExcitatory() {
+        return excitatory;
+    }
+
+    @Override
+    public DoubleMatrix getXPosition() {
+        return x;
+    }
+
+    @Override
+    public DoubleMatrix getYPosition() {
+        return y;
+    }
+
+    @Override
+    public DoubleMatrix getExcitatoryConductance() {
+        return zeros;
+    }
+
+    @Override
+    public DoubleMatrix getInhibitoryConductance() {
+        return zeros;
+    }
+
+    @Override
+    public DoubleMatrix getLeakConductance() {
+        return zeros;
+    }
+
+    @Override
+    public DoubleMatrix getInputs() {
+        return zeros;
+    }
+
+    @Override
+    public DoubleMatrix getPotentials() {
+        return zeros;
+    }
+
+    @Override
+    public DoubleMatrix getSpikes() {
+        return spk;
+    }
+
+    @Override
+    public int[] getSpikeIndices() {
+        return spikeIndices.getIndices();
+    }
+
+    @Override
+    public int getSpikeCount() {
+        return spikeIndices.getCount();
+    }
+}
@@ -0,0 +1,69 @@
+package expresscogs.network;
+
+import org.jblas.DoubleMatrix;
+
+/**
+ * RandomStream is a small, fast, non-thread-safe pseudo-random generator (xoroshiro128++). Each input
+ * generator owns its own stream, or a CounterRandom keyed from one, so neuron groups in different threads
+ * and simulations running in parallel never contend for a shared generator. Independent streams are
+ * created with split, which makes the streams of a network reproducible from a single seed.
+ */
+public class RandomStream {
+    private long s0;
+    private long s1;
+    
+    /** Create a stream seeded from the jblas random generator, so that it follows Random.seed. */
+    public RandomStream() {
+        this(((long)org.jblas.util.Random.nextInt(Integer.MAX_VALUE) << 32)
+                ^ org.jblas.util.Random.nextInt(Integer.MAX_VALUE));
+    }
+    
+    /** Create a stream from a seed. Equal seeds produce equal sequences. */
+    public RandomStream(long seed) {
+        s0 = mix(seed += 0x9E3779B97F4A7C15L);
+        s1 = mix(seed + 0x9E3779B97F4A7C15L);
+        if (s0 == 0 && s1 == 0) {
+            s1 = 1;
+        }
+    }
+    
+    /** Create a new stream which is statistically independent of this one, advancing this stream. */
+    public RandomStream split() {
+        return new RandomStream(nextLong());
+    }
+    
+    public long nextLong() {
+        long a = s0;
+        long b = s1;
+        long result = Long.rotateLeft(a + b, 17) + a;
+        b ^= a;
+        s0 = Long.rotateLeft(a, 49) ^ b ^ (b << 21);
+        s1 = Long.rotateLeft(b, 28);
+        return result;
+    }
+    
+    /** Get a uniformly distributed value in [0, 1). */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+    
+    /** Get a uniformly distributed integer in [0, bound). */
+    public int nextInt(int bound) {
+        return (int)(nextDouble() * bound);
+    }
+    
+    /** Get a matrix of uniformly distributed values in [0, 1), as DoubleMatrix.rand but from this stream. */
+    public DoubleMatrix rand(int rows, int columns) {
+        DoubleMatrix matrix = new DoubleMatrix(rows, columns);
+        for (int k = 0; k < matrix.length; ++k) {
+            matrix.data[k] = nextDouble();
+        }
+        return matrix;
+    }
+    
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,32 @@
+package expresscogs.network;
+
+import java.util.List;
+
+import expresscogs.network.synapses.SynapseGroup;
+
+/**
+ * SerialScheduler updates every group of the network in order on the calling thread.
+ */
+public class SerialScheduler implements NetworkScheduler {
+    private List<NeuronGroup> neuronGroups;
+    private List<SynapseGroup> synapseGroups;
+    
+    @Override
+    public void setGroups(List<NeuronGroup> neuronGroups, List<SynapseGroup> synapseGroups) {
+        this.neuronGroups = neuronGroups;
+        this.synapseGroups = synapseGroups;
+    }
+    
+    @Override
+    public void update(int step) {
+        for (int i = 0; i < neuronGroups.size(); ++i) {
+            neuronGroups.get(i).update(step);
+        }
+        for (int i = 0; i < synapseGroups.size(); ++i) {
+            synapseGroups.get(i).update(step);
+        }
+    }
+    
+    @Override
+    public void shutdown() {}
+}
@@ -0,0 +1,78 @@
+package expresscogs.network;
+
+/**
+ * SpikeIndexBuffer holds the ascending indices of the neurons in a group which spiked during the current
+ * step. Slices of the group, which may be updated concurrently, write their spikes into the buffer starting
+ * at their own first index, and the slices are compacted into a single list the first time it is read.
+ * Consumers therefore pay for the number of spikes rather than the size of the group.
+ */
+public class SpikeIndexBuffer {
+    private int size;
+    private int[] indices;
+    private int[] sliceCounts;
+    private int[] sliceEnds;
+    private int count;
+    private volatile boolean compacted = true;
+    
+    public SpikeIndexBuffer(int size) {
+        this.size = size;
+        indices = new int[size];
+        sliceCounts = new int[size];
+        sliceEnds = new int[size];
+    }
+    
+    /** Get the array into which the slice [start, end) writes its spike indices, from position start. */
+    public int[] getSliceArray() {
+        return indices;
+    }
+    
+    /** Record that the slice [start, end) wrote count spike indices from position start. */
+    public void endSlice(int start, int end, int count) {
+        sliceCounts[start] = count;
+        sliceEnds[start] = end;
+        compacted = false;
+    }
+    
+    /** Replace the contents of the buffer with the non-zero entries of a dense spike vector. */
+    public void setSpikes(double[] spikes) {
+        int n = 0;
+        for (int i = 0; i < size; ++i) {
+            if (spikes[i] != 0) {
+                indices[n++] = i;
+            }
+        }
+        endSlice(0, size, n);
+    }
+    
+    /** Get the indices of the neurons which spiked. Only the first getCount() entries are valid. */
+    public int[] getIndices() {
+        compact();
+        return indices;
+    }
+    
+    /** Get the number of neurons which spiked. */
+    public int getCount() {
+        compact();
+        return count;
+    }
+    
+    private void compact() {
+        if (compacted) {
+            return;
+        }
+        synchronized (this) {
+            if (compacted) {
+                return;
+            }
+            int n = 0;
+            for (int start = 0; start < size; start = sliceEnds[start]) {
+                if (n != start) {
+                    System.arraycopy(indices, start, indices, n, sliceCounts[start]);
+                }
+                n += sliceCounts[start];
+            }
+            count = n;
+            compacted = true;
+        }
+    }
+}
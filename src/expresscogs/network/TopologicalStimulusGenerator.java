@@ -10,6 +10,11 @@ import expresscogs.network.NeuronGroup;
  * ContinuousStimulusGenerator generates input to a neuron group from a random noise
  * term combined with position-based stimuli. The stimulus falls off linearly to zero
  * at the specified stimulus width.
+ * 
+ * The stimulus profile is cached. Changing the parameters only records them, and the
+ * profile is brought up to date once at the start of the next step. When the neuron
+ * positions are sorted, a moved or resized stimulus only re-evaluates the neurons
+ * within the support of the old and new stimulus.
  */
 public class TopologicalStimulusGenerator implements InputGenerator {
     public enum Shape {
@@ -22,6 +27,16 @@ public class TopologicalStimulusGenerator implements InputGenerator {
                 stimulus.muli(height / width);
                 return stimulus;
             }
+            
+            @Override
+            public double evaluate(double x, double center, double width, double height) {
+                return Math.max(width - Math.abs(x - center), 0) * (height / width);
+            }
+            
+            @Override
+            public double getSupport(double width) {
+                return width;
+            }
         },
         
         NOTCH {
@@ -32,6 +47,16 @@ public class TopologicalStimulusGenerator implements InputGenerator {
                 stimulus.muli(height);
                 return stimulus;
             }
+            
+            @Override
+            public double evaluate(double x, double center, double width, double height) {
+                return Math.abs(x - center) < width / 2 ? height : 0;
+            }
+            
+            @Override
+            public double getSupport(double width) {
+                return width / 2;
+            }
         },
         
         GAUSSIAN {
@@ -44,13 +69,39 @@ public class TopologicalStimulusGenerator implements InputGenerator {
                 stimulus.muli(height);
                 return stimulus;
             }
+            
+            @Override
+            public double evaluate(double x, double center, double width, double height) {
+                double shiftedX = x - center;
+                return Math.exp(shiftedX * shiftedX / -(0.25 * width * width)) * height;
+            }
+            
+            /** Beyond four widths the profile is below 1e-27 of its height. */
+            @Override
+            public double getSupport(double width) {
+                return 4 * width;
+            }
         };
         
         public abstract DoubleMatrix generate(DoubleMatrix x, double center, double width, double height);
+        
+        /** Evaluate the stimulus at a single position. */
+        public abstract double evaluate(double x, double center, double width, double height);
+        
+        /** Get the distance from the center beyond which the stimulus is zero, or negligible. */
+        public abstract double getSupport(double width);
     }
     
     private DoubleMatrix neuronPositions;
     private DoubleMatrix stimulus;
+    private boolean sortedPositions;
+    private boolean stimulusChanged;
+    private boolean fullUpdate;
+    private Shape appliedShape;
+    private double appliedPosition;
+    private double appliedWidth;
+    private RandomStream random = new RandomStream();
+    private CounterRandom noiseRandom = new CounterRandom();
     private Shape shape = Shape.GAUSSIAN;
     private double position = 0.5;
     private double noise = 1e-3;
@@ -63,7 +114,19 @@ public class TopologicalStimulusGenerator implements InputGenerator {
     @Override
     public void setNeuronGroup(NeuronGroup neurons) {
         neuronPositions = neurons.getXPosition();
-        generateStimulus();
+        stimulus = DoubleMatrix.zeros(neuronPositions.length);
+        sortedPositions = true;
+        for (int n = 1; n < neuronPositions.length; ++n) {
+            sortedPositions &= neuronPositions.data[n - 1] <= neuronPositions.data[n];
+        }
+        fullUpdate = true;
+        updateStimulus();
+    }
+    
+    @Override
+    public void setRandom(RandomStream random) {
+        this.random = random;
+        noiseRandom = new CounterRandom(random.nextLong());
     }
     
     /** Return the shape of the stimulus. */
@@ -74,7 +137,7 @@ public class TopologicalStimulusGenerator implements InputGenerator {
     /** Assign the shape of the stimulus. */
     public void setShape(Shape value) {
         shape = value;
-        generateStimulus();
+        stimulusChanged = true;
     }
     
     /** Return the scale of random noise added to the stimulus each update. */
@@ -85,7 +148,8 @@ public class TopologicalStimulusGenerator implements InputGenerator {
     /** Assign the scale of random noise added to the stimulus each update. */
     public void setNoise(double value) {
         noise = value;
-        generateStimulus();
+        stimulusChanged = true;
+        fullUpdate = true;
     }
     
     /** Return the position of the stimulus. */
@@ -96,7 +160,7 @@ public class TopologicalStimulusGenerator implements InputGenerator {
     /** Assign the position of the stimulus. */
     public void setPosition(double value) {
         position = value;
-        generateStimulus();
+        stimulusChanged = true;
     }
     
     /** Return the scale of activation at the center of the stimulus. */
@@ -107,7 +171,7 @@ public class TopologicalStimulusGenerator implements InputGenerator {
     /** Assign the scale of activation at the center of the stimulus. */
     public void setIntensity(double value) {
         intensity = value;
-        generateStimulus();
+        stimulusChanged = true;
     }
     
     /** Return the width of the stimulus in neuronal coordinates i.e. the distance from the
@@ -120,7 +184,7 @@ public class TopologicalStimulusGenerator implements InputGenerator {
      * center of the stimulus at which activation is zero. */
     public void setWidth(double value) {
         width = value;
-        generateStimulus();
+        stimulusChanged = true;
     }
     
     /** Return the signal-to-noise ratio of the generated input values. */
@@ -136,7 +200,7 @@ public class TopologicalStimulusGenerator implements InputGenerator {
      * scale according to the magnitude of the noise. */
     public void setSignalToNoiseRatio(double value) {
         intensity = value * noise;
-        generateStimulus();
+        stimulusChanged = true;
     }
     
     /** Return whether the stimulus will be randomized. If true, the position and signal-to-noise
@@ -164,30 +228,97 @@ public class TopologicalStimulusGenerator implements InputGenerator {
     }
     
     @Override
-    public DoubleMatrix generate() {
+    public boolean isSliceable() {
+        return true;
+    }
+    
+    @Override
+    public void prepare(int step) {
         if (randomize) {
-            if (step % interval == 0) {
-                setPosition(Math.random() * 0.9 + 0.05);
-                setSignalToNoiseRatio(Math.random() * 2);
+            if (this.step % interval == 0) {
+                setPosition(random.nextDouble() * 0.9 + 0.05);
+                setSignalToNoiseRatio(random.nextDouble() * 2);
             }
-            ++step;
+            ++this.step;
+        }
+        if (stimulusChanged) {
+            updateStimulus();
+        }
+    }
+    
+    @Override
+    public void generateInto(int step, DoubleMatrix input, int start, int end) {
+        double[] values = input.data;
+        double[] scale = stimulus.data;
+        for (int n = start; n < end; ++n) {
+            values[n] = noiseRandom.nextDouble(n, step, 0) * scale[n];
         }
-        return DoubleMatrix.rand(neuronPositions.length).muli(stimulus);
     }
     
-    private void generateStimulus() {
+    @Override
+    public void accumulateInto(int step, DoubleMatrix input, int start, int end) {
+        double[] values = input.data;
+        double[] scale = stimulus.data;
+        for (int n = start; n < end; ++n) {
+            values[n] += noiseRandom.nextDouble(n, step, 0) * scale[n];
+        }
+    }
+    
+    /** Bring the cached stimulus profile up to date with the current parameters. */
+    private void updateStimulus() {
         if (neuronPositions == null) {
             return;
         }
-        stimulus = shape.generate(neuronPositions, position, width, intensity);
-        stimulus.addi(noise);
-        stimulus.put(neuronPositions.lt(0.05), 0);
-        stimulus.put(neuronPositions.gt(0.95), 0);
-        //DoubleMatrix leftEdge = neuronPositions.lt(0.2);
-        //DoubleMatrix leftFalloff = neuronPositions.get(leftEdge).add(0.8);
-        //stimulus.put(leftEdge, stimulus.get(leftEdge).mul(leftFalloff));
-        //DoubleMatrix rightEdge = neuronPositions.gt(0.8);
-        //DoubleMatrix rightFalloff = neuronPositions.get(rightEdge).rsub(1.0).add(0.8);
-        //stimulus.put(rightEdge, stimulus.get(rightEdge).mul(rightFalloff));
+        stimulusChanged = false;
+        int length = neuronPositions.length;
+        if (fullUpdate || !sortedPositions || appliedShape == null) {
+            fullUpdate = false;
+            updateStimulus(0, length);
+        } else {
+            // Neurons outside both the old and the new support keep the noise level
+            double oldSupport = appliedShape.getSupport(appliedWidth);
+            double newSupport = shape.getSupport(width);
+            int oldStart = lowerBound(appliedPosition - oldSupport);
+            int oldEnd = lowerBound(Math.nextUp(appliedPosition + oldSupport));
+            int newStart = lowerBound(position - newSupport);
+            int newEnd = lowerBound(Math.nextUp(position + newSupport));
+            if (oldEnd < newStart || newEnd < oldStart) {
+                updateStimulus(oldStart, oldEnd);
+                updateStimulus(newStart, newEnd);
+            } else {
+                updateStimulus(Math.min(oldStart, newStart), Math.max(oldEnd, newEnd));
+            }
+        }
+        appliedShape = shape;
+        appliedPosition = position;
+        appliedWidth = width;
+    }
+    
+    private void updateStimulus(int start, int end) {
+        double[] x = neuronPositions.data;
+        double[] values = stimulus.data;
+        for (int n = start; n < end; ++n) {
+            if (x[n] < 0.05 || x[n] > 0.95) {
+                values[n] = 0;
+            } else {
+                values[n] = shape.evaluate(x[n], position, width, intensity) + noise;
+            }
+        }
+    }
+    
+    /** Get the index of the first neuron at or beyond position x, given sorted positions. */
+    private int lowerBound(double x) {
+        double[] positions = neuronPositions.data;
+        int low = 0;
+        int high = positions.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (positions[mid] < x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
     }
 }
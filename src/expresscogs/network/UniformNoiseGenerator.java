@@ -3,7 +3,7 @@ package expresscogs.network;
 import org.jblas.DoubleMatrix;
 
 public class UniformNoiseGenerator implements InputGenerator {
-    private int size;
+    private CounterRandom random = new CounterRandom();
     private double scale;
     private double constant;
     
@@ -17,12 +17,37 @@ public class UniformNoiseGenerator implements InputGenerator {
         this.constant = constant;
     }
     
-    public void setNeuronGroup(NeuronGroup neurons) {
-        size = neurons.getSize();
+    public void setNeuronGroup(NeuronGroup neurons) {}
+    
+    @Override
+    public void setRandom(RandomStream random) {
+        this.random = new CounterRandom(random.nextLong());
+    }
+    
+    /** Get the counter-based generator from which the noise of each neuron and step is drawn. */
+    protected CounterRandom getRandom() {
+        return random;
+    }
+    
+    @Override
+    public boolean isSliceable() {
+        return true;
+    }
+    
+    @Override
+    public void generateInto(int step, DoubleMatrix input, int start, int end) {
+        double[] values = input.data;
+        for (int n = start; n < end; ++n) {
+            values[n] = random.nextDouble(n, step, 0) * scale + constant;
+        }
     }
     
-    public DoubleMatrix generate() {
-        return DoubleMatrix.rand(size).muli(scale).addi(constant);
+    @Override
+    public void accumulateInto(int step, DoubleMatrix input, int start, int end) {
+        double[] values = input.data;
+        for (int n = start; n < end; ++n) {
+            values[n] += random.nextDouble(n, step, 0) * scale + constant;
+        }
     }
     
     public double getScale() {
@@ -0,0 +1,47 @@
+package expresscogs.network.synapses;
+
+import org.jblas.DoubleMatrix;
+
+/**
+ * ConductanceBuffer is a circular buffer of post synaptic conductance vectors. Conductances delivered at
+ * step t with a delay of d (1 <= d <= length) are applied to the target neuron group at step t + d.
+ */
+public class ConductanceBuffer {
+    private DoubleMatrix[] slots;
+    private boolean[] dirty;
+    
+    public ConductanceBuffer(int size, int length) {
+        slots = new DoubleMatrix[length];
+        dirty = new boolean[length];
+        for (int i = 0; i < length; ++i) {
+            slots[i] = DoubleMatrix.zeros(size);
+        }
+    }
+    
+    /** Get the number of steps spanned by the buffer, i.e. the maximum delay. */
+    public int getLength() {
+        return slots.length;
+    }
+    
+    /** Get the conductances which will be applied to the target at the given step. */
+    public DoubleMatrix get(int step) {
+        return slots[step % slots.length];
+    }
+    
+    /** Clear the slot which was applied to the target at the given step so that it can receive
+     * conductances for step + length. Slots which received no conductances are not touched. */
+    public void clear(int step) {
+        int i = step % slots.length;
+        if (dirty[i]) {
+            slots[i].fill(0);
+            dirty[i] = false;
+        }
+    }
+    
+    /** Get the raw conductance array which will be applied to the target delay steps after the given step. */
+    public double[] getSlot(int step, int delay) {
+        int i = (step + delay) % slots.length;
+        dirty[i] = true;
+        return slots[i].data;
+    }
+}
@@ -0,0 +1,45 @@
+package expresscogs.network.synapses;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import expresscogs.network.RandomStream;
+
+/**
+ * ConnectionRows assembles sparse connections from source rows which are generated independently and in
+ * parallel. Each row draws from its own stream, split in row order from the given stream before any row is
+ * generated, so the connections are reproducible from its seed and do not depend on the number of threads.
+ */
+final class ConnectionRows {
+    /** RowGenerator samples the targets of a single source neuron. */
+    interface RowGenerator {
+        /** Return the ascending target indices of source neuron i. */
+        int[] generate(int i, RandomStream random);
+    }
+    
+    private ConnectionRows() {}
+    
+    /** Generate unit connections for each source row and compress them into sparse weights. */
+    static SparseWeights generate(int rows, int columns, RandomStream random, RowGenerator generator) {
+        long[] seeds = new long[rows];
+        for (int i = 0; i < rows; ++i) {
+            seeds[i] = random.nextLong();
+        }
+        int[][] rowColumns = new int[rows][];
+        IntStream.range(0, rows).parallel().forEach(i -> {
+            rowColumns[i] = generator.generate(i, new RandomStream(seeds[i]));
+        });
+        int[] rowPointers = new int[rows + 1];
+        for (int i = 0; i < rows; ++i) {
+            rowPointers[i + 1] = rowPointers[i] + rowColumns[i].length;
+        }
+        int[] columnIndices = new int[rowPointers[rows]];
+        for (int i = 0; i < rows; ++i) {
+            System.arraycopy(rowColumns[i], 0, columnIndices, rowPointers[i], rowColumns[i].length);
+            rowColumns[i] = null;
+        }
+        double[] values = new double[columnIndices.length];
+        Arrays.fill(values, 1);
+        return new SparseWeights(rows, columns, rowPointers, columnIndices, values);
+    }
+}
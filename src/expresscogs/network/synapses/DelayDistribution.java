@@ -0,0 +1,63 @@
+package expresscogs.network.synapses;
+
+import expresscogs.network.NeuronGroup;
+import expresscogs.network.RandomStream;
+
+/**
+ * DelayDistribution assigns an integer conduction delay, in timesteps, to each synapse of a pathway.
+ */
+public interface DelayDistribution {
+    /** Create a distribution which assigns the same delay to every synapse. */
+    public static DelayDistribution fixed(int delay) {
+        return new DelayDistribution() {
+            @Override
+            public int getMaxDelay() {
+                return delay;
+            }
+            
+            @Override
+            public int getDelay(NeuronGroup source, int i, NeuronGroup target, int j, RandomStream random) {
+                return delay;
+            }
+        };
+    }
+    
+    /** Create a distribution which draws delays uniformly from [minDelay, maxDelay]. */
+    public static DelayDistribution uniform(int minDelay, int maxDelay) {
+        return new DelayDistribution() {
+            @Override
+            public int getMaxDelay() {
+                return maxDelay;
+            }
+            
+            @Override
+            public int getDelay(NeuronGroup source, int i, NeuronGroup target, int j, RandomStream random) {
+                return minDelay + random.nextInt(maxDelay - minDelay + 1);
+            }
+        };
+    }
+    
+    /** Create a distribution in which the delay grows linearly with the X distance between source and
+     * target neurons, from minDelay at zero distance to maxDelay at a distance of 1. */
+    public static DelayDistribution distance(int minDelay, int maxDelay) {
+        return new DelayDistribution() {
+            @Override
+            public int getMaxDelay() {
+                return maxDelay;
+            }
+            
+            @Override
+            public int getDelay(NeuronGroup source, int i, NeuronGroup target, int j, RandomStream random) {
+                double d = Math.abs(source.getXPosition().get(i) - target.getXPosition().get(j));
+                return Math.min(maxDelay, minDelay + (int)Math.round(d * (maxDelay - minDelay)));
+            }
+        };
+    }
+    
+    /** Get the largest delay which the distribution can assign. */
+    int getMaxDelay();
+    
+    /** Get the delay of the synapse from source neuron i to target neuron j, drawing any randomness from the
+     * given stream. Delays must be at least 1. */
+    int getDelay(NeuronGroup source, int i, NeuronGroup target, int j, RandomStream random);
+}
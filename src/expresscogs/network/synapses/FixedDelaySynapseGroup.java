@@ -5,6 +5,8 @@ import expresscogs.network.NeuronGroup;
 
 /**
  * DelaySynapseGroup is a SynapseGroup with a standard conductance model and fixed integer conductance delays.
+ * Spikes are propagated by scattering the scaled weights of each spiking source neuron directly into a
+ * circular conductance buffer, so the update allocates nothing and steps without spikes do no work.
  *
  * Author: Tim
  */
@@ -13,7 +15,10 @@ public class FixedDelaySynapseGroup implements SynapseGroup {
     private NeuronGroup source;
     private NeuronGroup target;
     private DoubleMatrix weights;
-    private DoubleMatrix conductances;
+    private ConductanceBuffer conductances;
+    private int[] spikeIndices;
+    private int spikeCount;
+    private double[] slot;
     private int delay;
     private double weightScale = 1.0;
     
@@ -24,7 +29,7 @@ public class FixedDelaySynapseGroup implements SynapseGroup {
         this.target = target;
         target.addDendriticSynapseGroup(this);
         this.weights = weights;
-        conductances = DoubleMatrix.zeros(target.getSize(), delay);
+        conductances = new ConductanceBuffer(target.getSize(), delay);
         this.delay = delay;
     }
     
@@ -35,16 +40,47 @@ public class FixedDelaySynapseGroup implements SynapseGroup {
     
     @Override
     public void update(int step) {
-        DoubleMatrix spikes = source.getSpikes();
-        int i = (step + delay) % delay;
-        if (spikes.sum() > 0) {
-            DoubleMatrix w = weights.getRows(spikes).mul(weightScale);
-            conductances.putColumn(i, w.columnSums());
-        } else {
-            conductances.putColumn(i, DoubleMatrix.zeros(conductances.rows));
+        prepareUpdate(step);
+        updateSlice(step, 0, target.getSize());
+    }
+    
+    @Override
+    public boolean isSliceable() {
+        return true;
+    }
+    
+    @Override
+    public void prepareUpdate(int step) {
+        conductances.clear(step);
+        spikeIndices = source.getSpikeIndices();
+        spikeCount = source.getSpikeCount();
+        slot = spikeCount > 0 ? conductances.getSlot(step, delay) : null;
+    }
+    
+    @Override
+    public void updateSlice(int step, int start, int end) {
+        if (spikeCount > 0) {
+            deliver(spikeIndices, spikeCount, slot, start, end);
+        }
+    }
+    
+    /** Scatter the scaled weights of the given spiking source neurons into target conductances [start, end). */
+    public void deliver(int[] spikes, int count, double[] g, int start, int end) {
+        double[] w = weights.data;
+        int rows = weights.rows;
+        for (int n = 0; n < count; ++n) {
+            int i = spikes[n];
+            for (int j = start, k = i + start * rows; j < end; ++j, k += rows) {
+                g[j] += w[k] * weightScale;
+            }
         }
     }
     
+    @Override
+    public long getNumSynapses() {
+        return (long)weights.rows * weights.columns;
+    }
+    
     @Override
     public NeuronGroup getSource() {
         return source;
@@ -62,7 +98,7 @@ public class FixedDelaySynapseGroup implements SynapseGroup {
     
     @Override
     public DoubleMatrix getConductances(int step) {
-        return conductances.getColumn(step % delay);
+        return conductances.get(step);
     }
     
     @Override
@@ -0,0 +1,258 @@
+package expresscogs.network.synapses;
+
+import java.util.Arrays;
+
+import org.jblas.DoubleMatrix;
+
+import expresscogs.network.NeuronGroup;
+import expresscogs.network.RandomStream;
+
+/**
+ * GridNeighborhoodTopology generates SynapseGroup connections based on a normal probability
+ * density function of the two dimensional (x, y) distance between neurons. Target neurons are
+ * binned into a uniform grid of cells the size of the cutoff radius, and each source neuron only
+ * considers targets in the neighbouring cells, so generation scales with the number of source
+ * neurons times the local density of targets rather than the product of the group sizes.
+ *
+ * As in NeighborhoodTopology, the probabilities of each source row are scaled so that the
+ * expected number of synapses is connectivity times the number of target neurons. Targets
+ * further than cutoff standard deviations away are never connected. When the topology is
+ * toroidal, distances wrap around a sheet of the given width and height, so neurons at
+ * opposite edges are neighbours.
+ */
+public class GridNeighborhoodTopology implements SynapseGroupTopology {
+    private double connectivity = 0.1;
+    private double neighborhood = 0.05;
+    private double cutoff = 4;
+    private boolean toroidal = false;
+    private double width = 1;
+    private double height = 1;
+    private boolean selfSynapses = false;
+
+    public GridNeighborhoodTopology() {}
+
+    public GridNeighborhoodTopology(double connectivity, double neighborhood) {
+        this.connectivity = connectivity;
+        this.neighborhood = neighborhood;
+    }
+
+    /** Get the mean probability of generating a connection between each pair of source and target neurons. */
+    public double getConnectivity() {
+        return connectivity;
+    }
+
+    /** Set the mean probability of generating a connection between each pair of source and target neurons. */
+    public void setConnectivity(double value) {
+        connectivity = value;
+    }
+
+    /** Get the width (standard deviation) of the connectivity function. */
+    public double getNeighborhood() {
+        return neighborhood;
+    }
+
+    /** Set the width (standard deviation) of the connectivity function. */
+    public void setNeighborhood(double value) {
+        neighborhood = value;
+    }
+
+    /** Get the maximum connection distance, in units of the neighborhood. */
+    public double getCutoff() {
+        return cutoff;
+    }
+
+    /** Set the maximum connection distance, in units of the neighborhood. */
+    public void setCutoff(double value) {
+        cutoff = value;
+    }
+
+    /** Get whether distances wrap around the edges of the sheet. */
+    public boolean getToroidal() {
+        return toroidal;
+    }
+
+    /** Set whether distances wrap around the edges of a sheet of the given width and height. */
+    public void setToroidal(boolean value, double width, double height) {
+        toroidal = value;
+        this.width = width;
+        this.height = height;
+    }
+
+    /** Get whether synapses are allowed from a neuron to itself in recurrent (source == target) SynapseGroups. */
+    public boolean getSelfSynapses() {
+        return selfSynapses;
+    }
+
+    /** Set whether synapses are allowed from a neuron to itself in recurrent (source == target) SynapseGroups. */
+    public void setSelfSynapses(boolean value) {
+        selfSynapses = value;
+    }
+
+    @Override
+    public DoubleMatrix generateConnections(NeuronGroup source, NeuronGroup target, RandomStream random) {
+        return generateSparseConnections(source, target, random).toMatrix();
+    }
+
+    @Override
+    public SparseWeights generateSparseConnections(NeuronGroup source, NeuronGroup target, RandomStream random) {
+        double[] sourceX = source.getXPosition().data;
+        double[] sourceY = source.getYPosition().data;
+        Grid grid = new Grid(target.getXPosition().data, target.getYPosition().data);
+        boolean excludeSelf = (source == target && !selfSynapses);
+        double expected = connectivity * target.getSize();
+        ThreadLocal<int[]> candidates = ThreadLocal.withInitial(() -> new int[16]);
+        ThreadLocal<double[]> profile = ThreadLocal.withInitial(() -> new double[16]);
+        return ConnectionRows.generate(source.getSize(), target.getSize(), random, (i, rowRandom) -> {
+            int count = grid.collect(sourceX[i], sourceY[i], excludeSelf ? i : -1, candidates, profile);
+            return sampleRow(count, candidates.get(), profile.get(), expected, rowRandom);
+        });
+    }
+
+    /** Sample from the first count candidates, scaling their profile to the expected number of synapses. */
+    private static int[] sampleRow(int count, int[] candidates, double[] profile, double expected,
+            RandomStream random) {
+        double sum = 0;
+        for (int n = 0; n < count; ++n) {
+            sum += profile[n];
+        }
+        double scale = expected / sum;
+        int selected = 0;
+        for (int n = 0; n < count; ++n) {
+            if (random.nextDouble() < profile[n] * scale) {
+                candidates[selected++] = candidates[n];
+            }
+        }
+        int[] columns = Arrays.copyOf(candidates, selected);
+        Arrays.sort(columns);
+        return columns;
+    }
+
+    /** Grid bins target neurons into cells no smaller than the cutoff radius in each direction. */
+    private class Grid {
+        private double[] x;
+        private double[] y;
+        private double radius;
+        private double minX;
+        private double minY;
+        private double cellWidth;
+        private double cellHeight;
+        private int numColumns;
+        private int numRows;
+        private int[] cellStart;
+        private int[] cellNeurons;
+
+        Grid(double[] x, double[] y) {
+            this.x = x;
+            this.y = y;
+            radius = cutoff * neighborhood;
+            double extentX;
+            double extentY;
+            if (toroidal) {
+                minX = 0;
+                minY = 0;
+                extentX = width;
+                extentY = height;
+            } else {
+                minX = Arrays.stream(x).min().orElse(0);
+                minY = Arrays.stream(y).min().orElse(0);
+                extentX = Arrays.stream(x).max().orElse(0) - minX;
+                extentY = Arrays.stream(y).max().orElse(0) - minY;
+            }
+            // Cells must be at least the cutoff radius wide for the neighbouring cells to cover it
+            numColumns = Math.max(1, (int)Math.min(extentX / radius, 4096));
+            numRows = Math.max(1, (int)Math.min(extentY / radius, 4096));
+            cellWidth = Math.max(extentX / numColumns, radius);
+            cellHeight = Math.max(extentY / numRows, radius);
+            // Counting sort of the neurons by cell keeps each cell in ascending neuron order
+            cellStart = new int[numColumns * numRows + 1];
+            int[] cells = new int[x.length];
+            for (int j = 0; j < x.length; ++j) {
+                cells[j] = cell(column(x[j]), row(y[j]));
+                ++cellStart[cells[j] + 1];
+            }
+            for (int c = 0; c < numColumns * numRows; ++c) {
+                cellStart[c + 1] += cellStart[c];
+            }
+            cellNeurons = new int[x.length];
+            int[] next = Arrays.copyOf(cellStart, cellStart.length - 1);
+            for (int j = 0; j < x.length; ++j) {
+                cellNeurons[next[cells[j]]++] = j;
+            }
+        }
+
+        private int column(double px) {
+            int c = (int)Math.floor((px - minX) / cellWidth);
+            return toroidal ? Math.floorMod(c, numColumns) : Math.min(Math.max(c, 0), numColumns - 1);
+        }
+
+        private int row(double py) {
+            int r = (int)Math.floor((py - minY) / cellHeight);
+            return toroidal ? Math.floorMod(r, numRows) : Math.min(Math.max(r, 0), numRows - 1);
+        }
+
+        private int cell(int column, int row) {
+            return row * numColumns + column;
+        }
+
+        /** Collect the targets within the cutoff radius of (px, py) and their unnormalised profile into the
+         * thread's scratch arrays, growing them as needed, and return the number collected. */
+        int collect(double px, double py, int self, ThreadLocal<int[]> candidates, ThreadLocal<double[]> profile) {
+            int[] indices = candidates.get();
+            double[] values = profile.get();
+            double radiusSqr = radius * radius;
+            double twoSigmaSqr = 2 * neighborhood * neighborhood;
+            int centerColumn = column(px);
+            int centerRow = row(py);
+            int firstColumn = centerColumn - 1;
+            int lastColumn = centerColumn + 1;
+            int firstRow = centerRow - 1;
+            int lastRow = centerRow + 1;
+            // With fewer than three cells in a wrapped direction the neighbours would visit a cell twice
+            if (toroidal && numColumns < 3) {
+                firstColumn = 0;
+                lastColumn = numColumns - 1;
+            }
+            if (toroidal && numRows < 3) {
+                firstRow = 0;
+                lastRow = numRows - 1;
+            }
+            int count = 0;
+            for (int gridRow = firstRow; gridRow <= lastRow; ++gridRow) {
+                int r = toroidal ? Math.floorMod(gridRow, numRows) : gridRow;
+                if (r < 0 || r >= numRows) {
+                    continue;
+                }
+                for (int gridColumn = firstColumn; gridColumn <= lastColumn; ++gridColumn) {
+                    int c = toroidal ? Math.floorMod(gridColumn, numColumns) : gridColumn;
+                    if (c < 0 || c >= numColumns) {
+                        continue;
+                    }
+                    int cell = cell(c, r);
+                    for (int k = cellStart[cell]; k < cellStart[cell + 1]; ++k) {
+                        int j = cellNeurons[k];
+                        double dx = Math.abs(px - x[j]);
+                        double dy = Math.abs(py - y[j]);
+                        if (toroidal) {
+                            dx = Math.min(dx, width - dx);
+                            dy = Math.min(dy, height - dy);
+                        }
+                        double distanceSqr = dx * dx + dy * dy;
+                        if (distanceSqr > radiusSqr || j == self) {
+                            continue;
+                        }
+                        if (count == indices.length) {
+                            indices = Arrays.copyOf(indices, 2 * count);
+                            values = Arrays.copyOf(values, 2 * count);
+                            candidates.set(indices);
+                            profile.set(values);
+                        }
+                        indices[count] = j;
+                        values[count] = Math.exp(-distanceSqr / twoSigmaSqr);
+                        ++count;
+                    }
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -1,14 +1,20 @@
 package expresscogs.network.synapses;
 
+import java.util.Arrays;
+
 import org.jblas.DoubleMatrix;
 import org.jblas.MatrixFunctions;
 
 import expresscogs.network.NeuronGroup;
+import expresscogs.network.RandomStream;
 
 /**
  * NeighborhoodTopology generates SynapseGroup connections based on a normal probability
  * density function of x distance. Approximately two thirds of a given neuron's synapses
  * will be made with neurons that are less than a distance of neighborhood away.
+ * 
+ * Sparse connections are generated one source row at a time, in parallel, without building
+ * any source x target matrices.
  */
 public class NeighborhoodTopology implements SynapseGroupTopology {
     private static DoubleMatrix normalPdf(DoubleMatrix x, double mean, double std) {
@@ -60,14 +66,14 @@ public class NeighborhoodTopology implements SynapseGroupTopology {
     }
     
     @Override
-    public DoubleMatrix generateConnections(NeuronGroup source, NeuronGroup target) {
+    public DoubleMatrix generateConnections(NeuronGroup source, NeuronGroup target, RandomStream random) {
         DoubleMatrix distance = getDistanceMatrix(source, target);
         DoubleMatrix probability = normalPdf(distance, 0.0, neighborhood);
         // Scale overall probability matrix to connectivity (edges receive fewer connections)
         //probability.divi(probability.mean()).muli(connectivity);
         // Scale probability matrix rows to connectivity
         probability.diviColumnVector(probability.rowMeans()).muli(connectivity);
-        DoubleMatrix connections = DoubleMatrix.rand(source.getSize(), target.getSize());
+        DoubleMatrix connections = random.rand(source.getSize(), target.getSize());
         connections.lti(probability);
         if (source == target && !selfSynapses) {
             connections.put(DoubleMatrix.eye(connections.rows), 0);
@@ -75,6 +81,42 @@ public class NeighborhoodTopology implements SynapseGroupTopology {
         return connections;
     }
     
+    @Override
+    public SparseWeights generateSparseConnections(NeuronGroup source, NeuronGroup target, RandomStream random) {
+        double[] sourceX = source.getXPosition().data;
+        double[] targetX = target.getXPosition().data;
+        boolean excludeSelf = (source == target && !selfSynapses);
+        return ConnectionRows.generate(sourceX.length, targetX.length, random, (i, rowRandom) ->
+            generateRow(sourceX[i], targetX, excludeSelf ? i : -1, rowRandom));
+    }
+    
+    /** Sample the targets of a single source neuron, with probabilities scaled to a mean of connectivity
+     * across the row. The row sum is found in a first pass and each probability is recomputed while sampling,
+     * so only the selected targets are stored. */
+    private int[] generateRow(double x, double[] targetX, int self, RandomStream random) {
+        double twoSigmaSqr = 2 * neighborhood * neighborhood;
+        double sum = 0;
+        for (int j = 0; j < targetX.length; ++j) {
+            double d = x - targetX[j];
+            sum += Math.exp(-d * d / twoSigmaSqr);
+        }
+        double scale = connectivity * targetX.length / sum;
+        // Start from the expected fan-out plus some slack, growing if a row draws more
+        int expected = (int)(connectivity * targetX.length);
+        int[] columns = new int[expected + (int)Math.sqrt(expected) + 8];
+        int count = 0;
+        for (int j = 0; j < targetX.length; ++j) {
+            double d = x - targetX[j];
+            if (random.nextDouble() < Math.exp(-d * d / twoSigmaSqr) * scale && j != self) {
+                if (count == columns.length) {
+                    columns = Arrays.copyOf(columns, columns.length * 2);
+                }
+                columns[count++] = j;
+            }
+        }
+        return Arrays.copyOf(columns, count);
+    }
+    
     /* Code for non-neighborhood (inverted mexican hat) connectivity function
         DoubleMatrix d = source.getXPosition().repmat(1, target.getSize());
         d.subi(target.getXPosition().transpose().repmat(source.getSize(), 1));
@@ -1,13 +1,13 @@
 package expresscogs.network.synapses;
 
 import org.jblas.DoubleMatrix;
-import org.jblas.MatrixFunctions;
 
 import expresscogs.network.NeuronGroup;
 
 /**
  * NoDelaySynapseGroup is a SynapseGroup with a standard conductance model and no conductance delays (network
- * update cycle may impose a fixed delay of 1 timestep).
+ * update cycle may impose a fixed delay of 1 timestep). Spikes are propagated by scattering the scaled weights
+ * of each spiking source neuron directly into the conductance vector without allocating.
  *
  * Author: Tim
  */
@@ -16,7 +16,10 @@ public class NoDelaySynapseGroup implements SynapseGroup {
     private NeuronGroup source;
     private NeuronGroup target;
     private DoubleMatrix weights;
-    private DoubleMatrix conductances;
+    private ConductanceBuffer conductances;
+    private int[] spikeIndices;
+    private int spikeCount;
+    private double[] slot;
     private double weightScale = 1.0;
     
     public NoDelaySynapseGroup(String name, NeuronGroup source, NeuronGroup target, DoubleMatrix weights) {
@@ -26,7 +29,7 @@ public class NoDelaySynapseGroup implements SynapseGroup {
         this.target = target;
         target.addDendriticSynapseGroup(this);
         this.weights = weights;
-        conductances = DoubleMatrix.zeros(target.getSize());
+        conductances = new ConductanceBuffer(target.getSize(), 1);
     }
     
     @Override
@@ -36,14 +39,47 @@ public class NoDelaySynapseGroup implements SynapseGroup {
     
     @Override
     public void update(int step) {
-        conductances.fill(0);
-        DoubleMatrix spikes = source.getSpikes();
-        if (spikes.sum() > 0) {
-            DoubleMatrix w = weights.getRows(spikes).mul(weightScale);
-            conductances.addi(w.columnSums());
+        prepareUpdate(step);
+        updateSlice(step, 0, target.getSize());
+    }
+    
+    @Override
+    public boolean isSliceable() {
+        return true;
+    }
+    
+    @Override
+    public void prepareUpdate(int step) {
+        conductances.clear(step);
+        spikeIndices = source.getSpikeIndices();
+        spikeCount = source.getSpikeCount();
+        slot = spikeCount > 0 ? conductances.getSlot(step, 1) : null;
+    }
+    
+    @Override
+    public void updateSlice(int step, int start, int end) {
+        if (spikeCount > 0) {
+            deliver(spikeIndices, spikeCount, slot, start, end);
+        }
+    }
+    
+    /** Scatter the scaled weights of the given spiking source neurons into target conductances [start, end). */
+    public void deliver(int[] spikes, int count, double[] g, int start, int end) {
+        double[] w = weights.data;
+        int rows = weights.rows;
+        for (int n = 0; n < count; ++n) {
+            int i = spikes[n];
+            for (int j = start, k = i + start * rows; j < end; ++j, k += rows) {
+                g[j] += w[k] * weightScale;
+            }
         }
     }
     
+    @Override
+    public long getNumSynapses() {
+        return (long)weights.rows * weights.columns;
+    }
+    
     @Override
     public NeuronGroup getSource() {
         return source;
@@ -61,7 +97,7 @@ public class NoDelaySynapseGroup implements SynapseGroup {
     
     @Override
     public DoubleMatrix getConductances(int step) {
-        return conductances;
+        return conductances.get(step);
     }
     
     @Override
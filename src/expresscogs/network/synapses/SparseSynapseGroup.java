@@ -0,0 +1,120 @@
+package expresscogs.network.synapses;
+
+import org.jblas.DoubleMatrix;
+
+import expresscogs.network.NeuronGroup;
+
+/**
+ * SparseSynapseGroup is a SynapseGroup with a standard conductance model, fixed integer conductance delays,
+ * and weights stored in compressed sparse row format. Each update walks only the outgoing synapses of the
+ * source neurons which spiked, so memory and update cost scale with the number of synapses rather than
+ * the size of the source x target matrix. A delay of 1 is equivalent to NoDelaySynapseGroup.
+ */
+public class SparseSynapseGroup implements SynapseGroup {
+    private String name;
+    private NeuronGroup source;
+    private NeuronGroup target;
+    private SparseWeights weights;
+    private ConductanceBuffer conductances;
+    private int[] spikeIndices;
+    private int spikeCount;
+    private double[] slot;
+    private double weightScale = 1.0;
+    
+    public SparseSynapseGroup(String name, NeuronGroup source, NeuronGroup target, SparseWeights weights, int delay) {
+        this.name = name;
+        this.source = source;
+        source.addAxonalSynapseGroup(this);
+        this.target = target;
+        target.addDendriticSynapseGroup(this);
+        this.weights = weights;
+        conductances = new ConductanceBuffer(target.getSize(), delay);
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    @Override
+    public void update(int step) {
+        prepareUpdate(step);
+        updateSlice(step, 0, target.getSize());
+    }
+    
+    @Override
+    public boolean isSliceable() {
+        return true;
+    }
+    
+    @Override
+    public void prepareUpdate(int step) {
+        conductances.clear(step);
+        spikeIndices = source.getSpikeIndices();
+        spikeCount = source.getSpikeCount();
+        slot = spikeCount > 0 ? conductances.getSlot(step, conductances.getLength()) : null;
+    }
+    
+    @Override
+    public void updateSlice(int step, int start, int end) {
+        if (spikeCount > 0) {
+            deliver(spikeIndices, spikeCount, slot, start, end);
+        }
+    }
+    
+    /** Scatter the scaled weights of the given spiking source neurons into target conductances [start, end). */
+    public void deliver(int[] spikes, int count, double[] g, int start, int end) {
+        int[] rowPointers = weights.getRowPointers();
+        int[] columns = weights.getColumnIndices();
+        double[] values = weights.getValues();
+        boolean whole = (start == 0 && end == g.length);
+        for (int n = 0; n < count; ++n) {
+            int i = spikes[n];
+            int k = whole ? rowPointers[i] : weights.findColumn(i, start);
+            for (int last = rowPointers[i + 1]; k < last && columns[k] < end; ++k) {
+                g[columns[k]] += values[k] * weightScale;
+            }
+        }
+    }
+    
+    @Override
+    public long getNumSynapses() {
+        return weights.getNumSynapses();
+    }
+    
+    @Override
+    public NeuronGroup getSource() {
+        return source;
+    }
+    
+    @Override
+    public NeuronGroup getTarget() {
+        return target;
+    }
+    
+    /** Get a dense copy of the synaptic weights. Modifying the copy does not affect the synapse group. */
+    @Override
+    public DoubleMatrix getWeights() {
+        return weights.toMatrix();
+    }
+    
+    /** Get the sparse synaptic weights. */
+    public SparseWeights getSparseWeights() {
+        return weights;
+    }
+    
+    @Override
+    public DoubleMatrix getConductances(int step) {
+        return conductances.get(step);
+    }
+    
+    @Override
+    public double getWeightScale() {
+        return weightScale;
+    }
+    
+    @Override
+    public void setWeightScale(double value) {
+        weightScale = value;
+    }
+}
@@ -1,16 +1,37 @@
 package expresscogs.network.synapses;
 
+import java.util.Arrays;
+
 import org.jblas.DoubleMatrix;
 import expresscogs.network.NeuronGroup;
+import expresscogs.network.RandomStream;
 
 /**
  * SparseUniformTopology generates SynapseGroup connections based on a uniform probability
- * of connection between source and target neurons.
+ * of connection between source and target neurons. Alternatively, each source neuron can
+ * be given a fixed number of targets (out-degree), or each target neuron a fixed number of
+ * sources (in-degree), chosen uniformly at random.
+ * 
+ * Sparse connections are sampled directly, so the cost is proportional to the number of
+ * synapses rather than the number of source and target pairs. With a connection probability,
+ * each row jumps between connected targets with geometrically distributed skips.
  * 
  * @author Tim
  */
 public class SparseUniformTopology implements SynapseGroupTopology {
+    /** Mode determines how the number of synapses of each neuron is chosen. */
+    public enum Mode {
+        /** Connect each pair of neurons independently with probability connectivity. */
+        PROBABILITY,
+        /** Connect each source neuron to exactly degree target neurons. */
+        FIXED_OUT_DEGREE,
+        /** Connect each target neuron to exactly degree source neurons. */
+        FIXED_IN_DEGREE
+    }
+    
     private double connectivity = 0.1;
+    private Mode mode = Mode.PROBABILITY;
+    private int degree = 0;
     private boolean selfSynapses = false;
     
     /** Get the probability of generating a connection between each pair of source and target neurons. */
@@ -23,6 +44,26 @@ public class SparseUniformTopology implements SynapseGroupTopology {
         connectivity = value;
     }
     
+    /** Get how the number of synapses of each neuron is chosen. */
+    public Mode getMode() {
+        return mode;
+    }
+    
+    /** Set how the number of synapses of each neuron is chosen. */
+    public void setMode(Mode value) {
+        mode = value;
+    }
+    
+    /** Get the number of synapses per neuron in the fixed degree modes. */
+    public int getDegree() {
+        return degree;
+    }
+    
+    /** Set the number of synapses per neuron in the fixed degree modes. */
+    public void setDegree(int value) {
+        degree = value;
+    }
+    
     /** Get whether synapses are allowed from a neuron to itself in recurrent (source == target) SynapseGroups. */
     public boolean getSelfSynapses() {
         return selfSynapses;
@@ -34,12 +75,92 @@ public class SparseUniformTopology implements SynapseGroupTopology {
     }
     
     @Override
-    public DoubleMatrix generateConnections(NeuronGroup source, NeuronGroup target) {
-        DoubleMatrix connections = DoubleMatrix.rand(source.getSize(), target.getSize());
+    public DoubleMatrix generateConnections(NeuronGroup source, NeuronGroup target, RandomStream random) {
+        if (mode != Mode.PROBABILITY) {
+            return generateSparseConnections(source, target, random).toMatrix();
+        }
+        DoubleMatrix connections = random.rand(source.getSize(), target.getSize());
         connections.lti(connectivity);
         if (source == target && !selfSynapses) {
             connections.put(DoubleMatrix.eye(connections.rows), 0);
         }
         return connections;
     }
+    
+    @Override
+    public SparseWeights generateSparseConnections(NeuronGroup source, NeuronGroup target, RandomStream random) {
+        boolean excludeSelf = (source == target && !selfSynapses);
+        int rows = source.getSize();
+        int columns = target.getSize();
+        switch (mode) {
+        case FIXED_OUT_DEGREE:
+            return generateFixedDegree(rows, columns, excludeSelf, random);
+        case FIXED_IN_DEGREE:
+            // Choose the sources of each target as rows of the transposed connections
+            return generateFixedDegree(columns, rows, excludeSelf, random).transpose();
+        default:
+            return ConnectionRows.generate(rows, columns, random, (i, rowRandom) ->
+                sampleGeometric(columns, excludeSelf ? i : -1, rowRandom));
+        }
+    }
+    
+    /** Sample each of the columns with probability connectivity by skipping over the unconnected columns. */
+    private int[] sampleGeometric(int columns, int self, RandomStream random) {
+        if (connectivity <= 0) {
+            return new int[0];
+        }
+        int[] selected = new int[Math.max(16, (int)(1.5 * connectivity * columns))];
+        int count = 0;
+        double logMiss = Math.log1p(-Math.min(connectivity, 1));
+        // The gap to the next connected column is geometrically distributed
+        for (long j = skip(random, logMiss); j < columns; j += 1 + skip(random, logMiss)) {
+            if (j == self) {
+                continue;
+            }
+            if (count == selected.length) {
+                selected = Arrays.copyOf(selected, 2 * count);
+            }
+            selected[count++] = (int)j;
+        }
+        return Arrays.copyOf(selected, count);
+    }
+    
+    private static long skip(RandomStream random, double logMiss) {
+        if (logMiss == Double.NEGATIVE_INFINITY) {
+            return 0;
+        }
+        return (long)Math.floor(Math.log(1 - random.nextDouble()) / logMiss);
+    }
+    
+    private SparseWeights generateFixedDegree(int rows, int columns, boolean excludeSelf, RandomStream random) {
+        int available = excludeSelf ? columns - 1 : columns;
+        if (degree < 0 || degree > available) {
+            throw new IllegalArgumentException("Degree " + degree + " must be between 0 and " + available);
+        }
+        ThreadLocal<boolean[]> chosen = ThreadLocal.withInitial(() -> new boolean[available]);
+        return ConnectionRows.generate(rows, columns, random, (i, rowRandom) ->
+            sampleFixed(available, excludeSelf ? i : -1, rowRandom, chosen.get()));
+    }
+    
+    /** Choose degree distinct columns from [0, available) with Floyd's algorithm, skipping over self. The
+     * chosen array must be all false and is left all false. */
+    private int[] sampleFixed(int available, int self, RandomStream random, boolean[] chosen) {
+        int[] selected = new int[degree];
+        for (int n = 0, j = available - degree; n < degree; ++n, ++j) {
+            int k = random.nextInt(j + 1);
+            if (chosen[k]) {
+                k = j;
+            }
+            chosen[k] = true;
+            selected[n] = k;
+        }
+        for (int n = 0; n < degree; ++n) {
+            chosen[selected[n]] = false;
+            if (self >= 0 && selected[n] >= self) {
+                ++selected[n];
+            }
+        }
+        Arrays.sort(selected);
+        return selected;
+    }
 }
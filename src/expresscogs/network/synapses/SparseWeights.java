@@ -0,0 +1,148 @@
+package expresscogs.network.synapses;
+
+import org.jblas.DoubleMatrix;
+
+/**
+ * SparseWeights stores the synaptic weights of a pathway in compressed sparse row (CSR) format. The
+ * outgoing synapses of source neuron i occupy the range [getRowStart(i), getRowEnd(i)) of the column
+ * index and value arrays, with column indices in ascending order. Memory scales with the number of
+ * synapses rather than the number of source and target pairs.
+ */
+public class SparseWeights {
+    /** Compress a dense source x target matrix, keeping only the non-zero entries. */
+    public static SparseWeights fromMatrix(DoubleMatrix matrix) {
+        int[] rowPointers = new int[matrix.rows + 1];
+        for (int j = 0; j < matrix.columns; ++j) {
+            int offset = j * matrix.rows;
+            for (int i = 0; i < matrix.rows; ++i) {
+                if (matrix.data[offset + i] != 0) {
+                    ++rowPointers[i + 1];
+                }
+            }
+        }
+        for (int i = 0; i < matrix.rows; ++i) {
+            rowPointers[i + 1] += rowPointers[i];
+        }
+        int[] columnIndices = new int[rowPointers[matrix.rows]];
+        double[] values = new double[rowPointers[matrix.rows]];
+        int[] next = new int[matrix.rows];
+        System.arraycopy(rowPointers, 0, next, 0, matrix.rows);
+        // Traversing columns in order leaves the column indices of each row sorted
+        for (int j = 0; j < matrix.columns; ++j) {
+            int offset = j * matrix.rows;
+            for (int i = 0; i < matrix.rows; ++i) {
+                double w = matrix.data[offset + i];
+                if (w != 0) {
+                    columnIndices[next[i]] = j;
+                    values[next[i]] = w;
+                    ++next[i];
+                }
+            }
+        }
+        return new SparseWeights(matrix.rows, matrix.columns, rowPointers, columnIndices, values);
+    }
+    
+    private int rows;
+    private int columns;
+    private int[] rowPointers;
+    private int[] columnIndices;
+    private double[] values;
+    
+    public SparseWeights(int rows, int columns, int[] rowPointers, int[] columnIndices, double[] values) {
+        this.rows = rows;
+        this.columns = columns;
+        this.rowPointers = rowPointers;
+        this.columnIndices = columnIndices;
+        this.values = values;
+    }
+    
+    /** Get the number of source neurons. */
+    public int getRows() {
+        return rows;
+    }
+    
+    /** Get the number of target neurons. */
+    public int getColumns() {
+        return columns;
+    }
+    
+    /** Get the total number of synapses. */
+    public int getNumSynapses() {
+        return rowPointers[rows];
+    }
+    
+    /** Get the index of the first synapse of source neuron i. */
+    public int getRowStart(int i) {
+        return rowPointers[i];
+    }
+    
+    /** Get the index after the last synapse of source neuron i. */
+    public int getRowEnd(int i) {
+        return rowPointers[i + 1];
+    }
+    
+    /** Get the index of the first synapse of source neuron i whose target is at least column. */
+    public int findColumn(int i, int column) {
+        int low = rowPointers[i];
+        int high = rowPointers[i + 1];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (columnIndices[mid] < column) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /** Get the row pointer array, of length rows + 1. */
+    public int[] getRowPointers() {
+        return rowPointers;
+    }
+    
+    /** Get the target neuron index of each synapse. */
+    public int[] getColumnIndices() {
+        return columnIndices;
+    }
+    
+    /** Get the weight of each synapse. */
+    public double[] getValues() {
+        return values;
+    }
+    
+    /** Swap the roles of source and target neurons, returning new target x source weights. */
+    public SparseWeights transpose() {
+        int[] transposedPointers = new int[columns + 1];
+        for (int k = 0; k < rowPointers[rows]; ++k) {
+            ++transposedPointers[columnIndices[k] + 1];
+        }
+        for (int j = 0; j < columns; ++j) {
+            transposedPointers[j + 1] += transposedPointers[j];
+        }
+        int[] transposedColumns = new int[rowPointers[rows]];
+        double[] transposedValues = new double[rowPointers[rows]];
+        int[] next = new int[columns];
+        System.arraycopy(transposedPointers, 0, next, 0, columns);
+        // Traversing rows in order leaves the column indices of each transposed row sorted
+        for (int i = 0; i < rows; ++i) {
+            for (int k = rowPointers[i]; k < rowPointers[i + 1]; ++k) {
+                int n = next[columnIndices[k]]++;
+                transposedColumns[n] = i;
+                transposedValues[n] = values[k];
+            }
+        }
+        return new SparseWeights(columns, rows, transposedPointers, transposedColumns, transposedValues);
+    }
+    
+    /** Expand the weights to a dense source x target matrix. */
+    public DoubleMatrix toMatrix() {
+        DoubleMatrix matrix = DoubleMatrix.zeros(rows, columns);
+        for (int i = 0; i < rows; ++i) {
+            for (int k = rowPointers[i]; k < rowPointers[i + 1]; ++k) {
+                matrix.put(i, columnIndices[k], values[k]);
+            }
+        }
+        return matrix;
+    }
+}
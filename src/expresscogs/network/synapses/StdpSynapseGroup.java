@@ -1,34 +1,217 @@
 package expresscogs.network.synapses;
 
-import org.jblas.DoubleMatrix;
-import org.jblas.MatrixFunctions;
-
 import expresscogs.network.NeuronGroup;
 
 /**
- * StdpSynapseGroup adds spike-timing dependent plasticity to the standard DelaySynapseGroup.
+ * StdpSynapseGroup adds spike-timing dependent plasticity to the standard VariableDelaySynapseGroup. Each
+ * source and target neuron carries an exponentially decaying spike trace. When a source neuron spikes its
+ * outgoing synapses are depressed in proportion to the target traces, and when a target neuron spikes its
+ * incoming synapses are potentiated in proportion to the source traces. Only the synapses of neurons which
+ * spiked are touched, so the cost of learning scales with spikes x fan-out rather than the weight matrix.
+ * Spike timing is measured at the soma, i.e. conduction delays do not affect plasticity. Weights are only
+ * modified within the target slice being updated, so slices can learn concurrently.
+ *
+ * Traces are decayed lazily: each trace stores the step at which it was last incremented, and is decayed
+ * by the elapsed number of steps when it is read, using a table of powers of the decay factor. A step
+ * therefore costs nothing for neurons which did not spike and whose synapses were not touched.
  *
  * Author: Tim
  */
-public class StdpSynapseGroup extends FixedDelaySynapseGroup {
-    public StdpSynapseGroup(String name, NeuronGroup source, NeuronGroup target, DoubleMatrix index, int maxDelay) {
-        super(name, source, target, index, maxDelay);
+public class StdpSynapseGroup extends VariableDelaySynapseGroup {
+    // Lookup tables of the trace decay factor raised to the number of elapsed steps
+    private static final int DECAY_TABLE_SIZE = 1024;
+    
+    private double[] preTrace;
+    private double[] postTrace;
+    private int[] preTraceStep;
+    private int[] postTraceStep;
+    private double[] preDecay;
+    private double[] postDecay;
+    private int step;
+    private int[] columnPointers;
+    private int[] columnSynapses;
+    private int[] columnSources;
+    private int[] postSpikes;
+    private int numPostSpikes;
+    private double tauPlus = 20e-3;
+    private double tauMinus = 20e-3;
+    private double aPlus = 0.01;
+    private double aMinus = 0.0105;
+    private double maxWeight = 1.0;
+    private double dt = 0.001;
+    private boolean plastic = true;
+    
+    public StdpSynapseGroup(String name, NeuronGroup source, NeuronGroup target, SparseWeights weights, int[] delays) {
+        super(name, source, target, weights, delays);
+        preTrace = new double[source.getSize()];
+        postTrace = new double[target.getSize()];
+        preTraceStep = new int[source.getSize()];
+        postTraceStep = new int[target.getSize()];
+        updateDecayTables();
+        createColumnIndex(weights);
+    }
+    
+    /** Index the synapses by target neuron so that the incoming synapses of a spiking target can be found
+     * without scanning the weights. */
+    private void createColumnIndex(SparseWeights weights) {
+        int[] columns = weights.getColumnIndices();
+        columnPointers = new int[weights.getColumns() + 1];
+        for (int k = 0; k < columns.length; ++k) {
+            ++columnPointers[columns[k] + 1];
+        }
+        for (int j = 0; j < weights.getColumns(); ++j) {
+            columnPointers[j + 1] += columnPointers[j];
+        }
+        columnSynapses = new int[columns.length];
+        columnSources = new int[columns.length];
+        int[] next = new int[weights.getColumns()];
+        System.arraycopy(columnPointers, 0, next, 0, next.length);
+        for (int i = 0; i < weights.getRows(); ++i) {
+            for (int k = weights.getRowStart(i); k < weights.getRowEnd(i); ++k) {
+                int c = next[columns[k]]++;
+                columnSynapses[c] = k;
+                columnSources[c] = i;
+            }
+        }
     }
 
     @Override
-    public void update(int step) {
-        /*conductances.putColumn(step % getDelays().columns, conductances.getColumn(step % getDelays().columns).fill(0));
-        int[] spikes = source.getSpikes().findIndices();
-        for (int n : spikes) {
-            int[] synapses = preIndex.eq(n).findIndices();
-            DoubleMatrix w = weights.get(synapses);
-            DoubleMatrix t = postIndex.get(synapses);
-            DoubleMatrix d = getDelays().get(synapses).add(step);
-            d.divi(getDelays().columns);
-            d = d.sub(MatrixFunctions.floor(d)).mul(getDelays().columns);
-            int[] indices = t.add(d.mul(conductances.rows)).toIntArray();
-            w.addi(conductances.get(indices));
-            conductances.put(indices, w);
-        }*/
+    public void prepareUpdate(int step) {
+        super.prepareUpdate(step);
+        if (!plastic) {
+            return;
+        }
+        this.step = step;
+        postSpikes = getTarget().getSpikeIndices();
+        numPostSpikes = getTarget().getSpikeCount();
+        // Depression does not read the source traces, so they can be incremented before the target slices
+        int[] preSpikes = getSpikeIndices();
+        for (int n = 0; n < getSpikeCount(); ++n) {
+            int i = preSpikes[n];
+            preTrace[i] = decayed(preTrace, preTraceStep, preDecay, i) + 1;
+            preTraceStep[i] = step;
+        }
+    }
+    
+    @Override
+    public void updateSlice(int step, int start, int end) {
+        super.updateSlice(step, start, end);
+        if (!plastic) {
+            return;
+        }
+        SparseWeights weights = getSparseWeights();
+        int[] rowPointers = weights.getRowPointers();
+        int[] columns = weights.getColumnIndices();
+        double[] w = weights.getValues();
+        boolean whole = (start == 0 && end == postTrace.length);
+        // Depress the outgoing synapses of each spiking source according to the target traces
+        int[] preSpikes = getSpikeIndices();
+        for (int n = 0; n < getSpikeCount(); ++n) {
+            int i = preSpikes[n];
+            int k = whole ? rowPointers[i] : weights.findColumn(i, start);
+            for (int last = rowPointers[i + 1]; k < last && columns[k] < end; ++k) {
+                double trace = decayed(postTrace, postTraceStep, postDecay, columns[k]);
+                w[k] = Math.max(0, w[k] - aMinus * maxWeight * trace);
+            }
+        }
+        // Potentiate the incoming synapses of each spiking target according to the source traces
+        for (int n = 0; n < numPostSpikes; ++n) {
+            int j = postSpikes[n];
+            if (j < start || j >= end) {
+                continue;
+            }
+            for (int c = columnPointers[j]; c < columnPointers[j + 1]; ++c) {
+                int k = columnSynapses[c];
+                double trace = decayed(preTrace, preTraceStep, preDecay, columnSources[c]);
+                w[k] = Math.min(maxWeight, w[k] + aPlus * maxWeight * trace);
+            }
+            postTrace[j] = decayed(postTrace, postTraceStep, postDecay, j) + 1;
+            postTraceStep[j] = step;
+        }
+    }
+    
+    /** Get the value of trace n in the current step, without modifying it, so that concurrent slices can read
+     * the source traces. */
+    private double decayed(double[] trace, int[] traceStep, double[] decay, int n) {
+        int elapsed = step - traceStep[n];
+        if (elapsed < decay.length) {
+            return trace[n] * decay[elapsed];
+        }
+        return trace[n] * Math.pow(decay[1], elapsed);
+    }
+    
+    private void updateDecayTables() {
+        preDecay = powers(Math.exp(-dt / tauPlus));
+        postDecay = powers(Math.exp(-dt / tauMinus));
+    }
+    
+    private static double[] powers(double factor) {
+        double[] table = new double[DECAY_TABLE_SIZE];
+        for (int k = 0; k < table.length; ++k) {
+            table[k] = Math.pow(factor, k);
+        }
+        return table;
+    }
+    
+    /** Get whether the weights are modified by spike timing. */
+    public boolean isPlastic() {
+        return plastic;
+    }
+    
+    /** Set whether the weights are modified by spike timing. */
+    public void setPlastic(boolean value) {
+        plastic = value;
+    }
+    
+    /** Get the time constant of the source traces, which governs the potentiation window. */
+    public double getTauPlus() {
+        return tauPlus;
+    }
+    
+    /** Set the time constant of the source traces, which governs the potentiation window. */
+    public void setTauPlus(double value) {
+        tauPlus = value;
+        updateDecayTables();
+    }
+    
+    /** Get the time constant of the target traces, which governs the depression window. */
+    public double getTauMinus() {
+        return tauMinus;
+    }
+    
+    /** Set the time constant of the target traces, which governs the depression window. */
+    public void setTauMinus(double value) {
+        tauMinus = value;
+        updateDecayTables();
+    }
+    
+    /** Get the potentiation amplitude as a fraction of the maximum weight. */
+    public double getAPlus() {
+        return aPlus;
+    }
+    
+    /** Set the potentiation amplitude as a fraction of the maximum weight. */
+    public void setAPlus(double value) {
+        aPlus = value;
+    }
+    
+    /** Get the depression amplitude as a fraction of the maximum weight. */
+    public double getAMinus() {
+        return aMinus;
+    }
+    
+    /** Set the depression amplitude as a fraction of the maximum weight. */
+    public void setAMinus(double value) {
+        aMinus = value;
+    }
+    
+    /** Get the upper bound of the (unscaled) synaptic weights. */
+    public double getMaxWeight() {
+        return maxWeight;
+    }
+    
+    /** Set the upper bound of the (unscaled) synaptic weights. */
+    public void setMaxWeight(double value) {
+        maxWeight = value;
     }
 }
@@ -1,20 +1,32 @@
 package expresscogs.network.synapses;
 
 import org.jblas.DoubleMatrix;
+
 import expresscogs.network.NeuronGroup;
+import expresscogs.network.RandomStream;
 
 /**
- * SynapseFactory creates SynapseGroups between NeuronGroups. 
+ * SynapseFactory creates SynapseGroups between NeuronGroups. The connect and connectWithDelay overloads
+ * without a RandomStream create dense synapses drawn from a stream seeded by the jblas random generator.
+ * Each kind of synapse group also has one method taking every option, including the RandomStream from
+ * which its connections, weights and delays are drawn.
  * @author Tim
  */
 public final class SynapseFactory {
+    /** SynapseStorage selects how the weights of a connection are stored. DENSE keeps a full source by
+     * target matrix, while SPARSE keeps only the existing synapses in compressed rows, which is much
+     * smaller when the connectivity is low. */
+    public enum SynapseStorage {
+        DENSE,
+        SPARSE
+    }
+    
     public static double minWeight = 0.25;
     public static double maxWeight = 1.0;
     
     public static SynapseGroup connect(String name, NeuronGroup source, NeuronGroup target, SynapseGroupTopology topology, double weightScale) {
-        DoubleMatrix connections = topology.generateConnections(source, target);
-        NoDelaySynapseGroup synapses = new NoDelaySynapseGroup(name, source, target, connections);
-        SynapseFactory.randomizeWeights(synapses, minWeight, maxWeight);
+        SynapseGroup synapses = new NoDelaySynapseGroup(name, source, target,
+                createDenseConnections(source, target, topology, new RandomStream()));
         synapses.setWeightScale(weightScale);
         return synapses;
     }
@@ -25,11 +37,7 @@ public final class SynapseFactory {
     }
     
     public static SynapseGroup connectWithDelay(String name, NeuronGroup source, NeuronGroup target, SynapseGroupTopology topology, double weightScale, int delay) {
-        DoubleMatrix connections = topology.generateConnections(source, target);
-        FixedDelaySynapseGroup synapses = new FixedDelaySynapseGroup(name, source, target, connections, delay);
-        SynapseFactory.randomizeWeights(synapses, minWeight, maxWeight);
-        synapses.setWeightScale(weightScale);
-        return synapses;
+        return connectWithDelay(name, source, target, topology, weightScale, delay, SynapseStorage.DENSE, new RandomStream());
     }
     
     public static SynapseGroup connectWithDelay(NeuronGroup source, NeuronGroup target, SynapseGroupTopology topology, double weightScale, int delay) {
@@ -37,10 +45,52 @@ public final class SynapseFactory {
         return connectWithDelay(name, source, target, topology, weightScale, delay);
     }
     
-    private static void randomizeWeights(SynapseGroup synapses, double minWeight, double maxWeight) {
-        DoubleMatrix weights = synapses.getWeights();
-        DoubleMatrix scale = DoubleMatrix.rand(weights.rows, weights.columns);
+    /** Connect with a fixed delay, storing the weights as requested and drawing from the given stream. */
+    public static SynapseGroup connectWithDelay(String name, NeuronGroup source, NeuronGroup target, SynapseGroupTopology topology, double weightScale, int delay, SynapseStorage storage, RandomStream random) {
+        SynapseGroup synapses;
+        if (storage == SynapseStorage.SPARSE) {
+            synapses = new SparseSynapseGroup(name, source, target,
+                    createSparseConnections(source, target, topology, random), delay);
+        } else {
+            synapses = new FixedDelaySynapseGroup(name, source, target,
+                    createDenseConnections(source, target, topology, random), delay);
+        }
+        synapses.setWeightScale(weightScale);
+        return synapses;
+    }
+    
+    /** Connect with a delay per synapse, drawing from the given stream. The weights are stored sparsely. */
+    public static SynapseGroup connectWithDelays(String name, NeuronGroup source, NeuronGroup target, SynapseGroupTopology topology, double weightScale, DelayDistribution delays, RandomStream random) {
+        SparseWeights connections = createSparseConnections(source, target, topology, random);
+        int[] synapseDelays = VariableDelaySynapseGroup.generateDelays(source, target, connections, delays, random);
+        VariableDelaySynapseGroup synapses = new VariableDelaySynapseGroup(name, source, target, connections, synapseDelays);
+        synapses.setWeightScale(weightScale);
+        return synapses;
+    }
+    
+    /** Connect plastic synapses with a delay per synapse, drawing from the given stream. */
+    public static SynapseGroup connectWithStdp(String name, NeuronGroup source, NeuronGroup target, SynapseGroupTopology topology, double weightScale, DelayDistribution delays, RandomStream random) {
+        SparseWeights connections = createSparseConnections(source, target, topology, random);
+        int[] synapseDelays = VariableDelaySynapseGroup.generateDelays(source, target, connections, delays, random);
+        StdpSynapseGroup synapses = new StdpSynapseGroup(name, source, target, connections, synapseDelays);
+        synapses.setMaxWeight(maxWeight);
+        synapses.setWeightScale(weightScale);
+        return synapses;
+    }
+    
+    private static DoubleMatrix createDenseConnections(NeuronGroup source, NeuronGroup target, SynapseGroupTopology topology, RandomStream random) {
+        DoubleMatrix weights = topology.generateConnections(source, target, random);
+        DoubleMatrix scale = random.rand(weights.rows, weights.columns);
         scale.muli(maxWeight - minWeight).addi(minWeight);
-        weights.muli(scale);
+        return weights.muli(scale);
+    }
+    
+    private static SparseWeights createSparseConnections(NeuronGroup source, NeuronGroup target, SynapseGroupTopology topology, RandomStream random) {
+        SparseWeights weights = topology.generateSparseConnections(source, target, random);
+        double[] values = weights.getValues();
+        for (int k = 0; k < values.length; ++k) {
+            values[k] *= random.nextDouble() * (maxWeight - minWeight) + minWeight;
+        }
+        return weights;
     }
 }
@@ -17,6 +17,26 @@ public interface SynapseGroup {
 
     /** Update the synapse group. */
     void update(int step);
+    
+    /** Return whether the group can be updated in slices of target neurons by prepareUpdate and
+     * updateSlice. */
+    default boolean isSliceable() {
+        return false;
+    }
+    
+    /** Begin a step which will be completed by calls to updateSlice on disjoint target ranges covering
+     * the target group. Groups which are not sliceable perform the whole update here. */
+    default void prepareUpdate(int step) {
+        update(step);
+    }
+    
+    /** Deliver conductances to target neurons [start, end) after prepareUpdate. Slices may be updated
+     * concurrently. */
+    default void updateSlice(int step, int start, int end) {}
+    
+    /** Get the number of stored synapses, which determines the cost of propagating a spike. Dense
+     * groups store every source and target pair. */
+    long getNumSynapses();
 
     /** Get the source of the synaptic pathway. */
     NeuronGroup getSource();
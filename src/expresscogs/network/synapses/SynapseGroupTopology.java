@@ -3,11 +3,13 @@ package expresscogs.network.synapses;
 import org.jblas.DoubleMatrix;
 
 import expresscogs.network.NeuronGroup;
+import expresscogs.network.RandomStream;
 
 /**
  * SynapseGroupTopology defines an interface for connectivity algorithms. Given source
  * and target NeuronGroups, SynapseGroupTopology can generate an index or a matrix of
- * connections.
+ * connections. All random draws are taken from the given stream, so connections are
+ * reproducible from the seed of the stream.
  * 
  * @author Tim
  */
@@ -26,5 +28,10 @@ public interface SynapseGroupTopology {
     }
     
     /** Generate a connectivity matrix between the source and target NeuronGroups. */
-    DoubleMatrix generateConnections(NeuronGroup source, NeuronGroup target);
+    DoubleMatrix generateConnections(NeuronGroup source, NeuronGroup target, RandomStream random);
+    
+    /** Generate sparse connectivity between the source and target NeuronGroups. */
+    default SparseWeights generateSparseConnections(NeuronGroup source, NeuronGroup target, RandomStream random) {
+        return SparseWeights.fromMatrix(generateConnections(source, target, random));
+    }
 }
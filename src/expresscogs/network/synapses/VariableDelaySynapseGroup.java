@@ -0,0 +1,167 @@
+package expresscogs.network.synapses;
+
+import org.jblas.DoubleMatrix;
+
+import expresscogs.network.NeuronGroup;
+import expresscogs.network.RandomStream;
+
+/**
+ * VariableDelaySynapseGroup is a SynapseGroup with a standard conductance model, sparse weights, and an
+ * individual integer conduction delay for each synapse. Conductances are delivered into a preallocated
+ * target x maxDelay circular buffer, so each update costs O(spikes x fan-out) and never allocates.
+ */
+public class VariableDelaySynapseGroup implements SynapseGroup {
+    private String name;
+    private NeuronGroup source;
+    private NeuronGroup target;
+    private SparseWeights weights;
+    private int[] delays;
+    private ConductanceBuffer conductances;
+    private double[][] slots;
+    private int[] spikeIndices;
+    private int spikeCount;
+    private double weightScale = 1.0;
+    
+    public VariableDelaySynapseGroup(String name, NeuronGroup source, NeuronGroup target, SparseWeights weights, int[] delays) {
+        this.name = name;
+        this.source = source;
+        source.addAxonalSynapseGroup(this);
+        this.target = target;
+        target.addDendriticSynapseGroup(this);
+        this.weights = weights;
+        this.delays = delays;
+        int maxDelay = 1;
+        for (int d : delays) {
+            if (d < 1) {
+                throw new IllegalArgumentException("Synaptic delays must be at least 1 step.");
+            }
+            maxDelay = Math.max(maxDelay, d);
+        }
+        conductances = new ConductanceBuffer(target.getSize(), maxDelay);
+        slots = new double[maxDelay + 1][];
+    }
+    
+    /** Generate a delay for each synapse of the given weights from a DelayDistribution. */
+    public static int[] generateDelays(NeuronGroup source, NeuronGroup target, SparseWeights weights, DelayDistribution distribution, RandomStream random) {
+        int[] delays = new int[weights.getNumSynapses()];
+        int[] columns = weights.getColumnIndices();
+        for (int i = 0; i < weights.getRows(); ++i) {
+            for (int k = weights.getRowStart(i); k < weights.getRowEnd(i); ++k) {
+                delays[k] = distribution.getDelay(source, i, target, columns[k], random);
+            }
+        }
+        return delays;
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    @Override
+    public void update(int step) {
+        prepareUpdate(step);
+        updateSlice(step, 0, target.getSize());
+    }
+    
+    @Override
+    public boolean isSliceable() {
+        return true;
+    }
+    
+    @Override
+    public void prepareUpdate(int step) {
+        conductances.clear(step);
+        spikeIndices = source.getSpikeIndices();
+        spikeCount = source.getSpikeCount();
+        if (spikeCount > 0) {
+            for (int d = 1; d < slots.length; ++d) {
+                slots[d] = conductances.getSlot(step, d);
+            }
+        }
+    }
+    
+    @Override
+    public void updateSlice(int step, int start, int end) {
+        if (spikeCount > 0) {
+            deliver(spikeIndices, spikeCount, start, end);
+        }
+    }
+    
+    /** Scatter the scaled weights of the given spiking source neurons into target conductances [start, end),
+     * in the conductance buffer slot matching the delay of each synapse. */
+    public void deliver(int[] spikes, int count, int start, int end) {
+        int[] rowPointers = weights.getRowPointers();
+        int[] columns = weights.getColumnIndices();
+        double[] values = weights.getValues();
+        boolean whole = (start == 0 && end == target.getSize());
+        for (int n = 0; n < count; ++n) {
+            int i = spikes[n];
+            int k = whole ? rowPointers[i] : weights.findColumn(i, start);
+            for (int last = rowPointers[i + 1]; k < last && columns[k] < end; ++k) {
+                slots[delays[k]][columns[k]] += values[k] * weightScale;
+            }
+        }
+    }
+    
+    /** Get the number of source neurons which spiked in the current step. */
+    protected int getSpikeCount() {
+        return spikeCount;
+    }
+    
+    /** Get the indices of the source neurons which spiked in the current step. */
+    protected int[] getSpikeIndices() {
+        return spikeIndices;
+    }
+    
+    @Override
+    public long getNumSynapses() {
+        return weights.getNumSynapses();
+    }
+    
+    @Override
+    public NeuronGroup getSource() {
+        return source;
+    }
+    
+    @Override
+    public NeuronGroup getTarget() {
+        return target;
+    }
+    
+    /** Get a dense copy of the synaptic weights. Modifying the copy does not affect the synapse group. */
+    @Override
+    public DoubleMatrix getWeights() {
+        return weights.toMatrix();
+    }
+    
+    /** Get the sparse synaptic weights. */
+    public SparseWeights getSparseWeights() {
+        return weights;
+    }
+    
+    /** Get the delay of each synapse, in the same order as the sparse weights. */
+    public int[] getDelays() {
+        return delays;
+    }
+    
+    /** Get the largest synaptic delay, which is the length of the conductance buffer. */
+    public int getMaxDelay() {
+        return conductances.getLength();
+    }
+    
+    @Override
+    public DoubleMatrix getConductances(int step) {
+        return conductances.get(step);
+    }
+    
+    @Override
+    public double getWeightScale() {
+        return weightScale;
+    }
+    
+    @Override
+    public void setWeightScale(double value) {
+        weightScale = value;
+    }
+}
@@ -0,0 +1,292 @@
+package expresscogs.recording;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jblas.DoubleMatrix;
+
+/**
+ * MappedRecord gives random access to a binary record file (see RecordFormat) by memory mapping it, so
+ * analysis reads only the pages it touches and nothing is parsed beyond the chunk headers. Each column of
+ * each chunk is contiguous in the file, and is exposed as a zero-copy DoubleBuffer view. Windows of rows
+ * are either returned as views, one per chunk they overlap, or copied into a DoubleMatrix, which must own
+ * its data.
+ */
+public class MappedRecord implements Closeable {
+    // Largest region mapped at once; regions hold whole chunks
+    private static final long MAX_REGION_BYTES = 1L << 30;
+    
+    private FileChannel channel;
+    private String[] columns;
+    private long numRows;
+    private int numChunks;
+    private long[] chunkOffsets;
+    private int[] chunkRows;
+    private long[] chunkFirstRows;
+    private int[] chunkRegions;
+    private List<MappedByteBuffer> regions = new ArrayList<MappedByteBuffer>();
+    private long[] regionOffsets;
+    
+    public MappedRecord(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        long position = readHeader();
+        readChunks(position);
+        mapRegions();
+    }
+    
+    private long readHeader() throws IOException {
+        ByteBuffer fixed = read(0, RecordFormat.MAGIC.length + 2 * Integer.BYTES);
+        long position = fixed.limit();
+        byte[] magic = new byte[RecordFormat.MAGIC.length];
+        fixed.get(magic);
+        if (!Arrays.equals(magic, RecordFormat.MAGIC)) {
+            throw new IOException("Not a record file");
+        }
+        int version = fixed.getInt();
+        if (version != RecordFormat.VERSION) {
+            throw new IOException("Unsupported record version " + version);
+        }
+        columns = new String[fixed.getInt()];
+        for (int j = 0; j < columns.length; ++j) {
+            int length = read(position, Short.BYTES).getShort() & 0xFFFF;
+            position += Short.BYTES;
+            columns[j] = new String(read(position, length).array(), RecordFormat.NAME_CHARSET);
+            position += length;
+        }
+        return position;
+    }
+    
+    private void readChunks(long position) throws IOException {
+        long size = channel.size();
+        chunkOffsets = new long[16];
+        chunkRows = new int[16];
+        chunkFirstRows = new long[17];
+        // Stop at an incomplete chunk, which is the tail of an interrupted recording
+        while (position + Integer.BYTES <= size) {
+            int rows = read(position, Integer.BYTES).getInt();
+            long bytes = (long)rows * columns.length * Double.BYTES;
+            if (rows <= 0 || position + Integer.BYTES + bytes > size) {
+                break;
+            }
+            if (Integer.BYTES + bytes > MAX_REGION_BYTES) {
+                throw new IOException("Record chunk of " + rows + " rows is too large to map");
+            }
+            if (numChunks == chunkOffsets.length) {
+                chunkOffsets = Arrays.copyOf(chunkOffsets, 2 * numChunks);
+                chunkRows = Arrays.copyOf(chunkRows, 2 * numChunks);
+                chunkFirstRows = Arrays.copyOf(chunkFirstRows, 2 * numChunks + 1);
+            }
+            chunkOffsets[numChunks] = position;
+            chunkRows[numChunks] = rows;
+            chunkFirstRows[numChunks] = numRows;
+            numRows += rows;
+            ++numChunks;
+            position += Integer.BYTES + bytes;
+        }
+        chunkFirstRows[numChunks] = numRows;
+    }
+    
+    private void mapRegions() throws IOException {
+        chunkRegions = new int[numChunks];
+        regionOffsets = new long[numChunks];
+        int c = 0;
+        while (c < numChunks) {
+            long start = chunkOffsets[c];
+            int end = c;
+            while (end < numChunks && chunkEnd(end) - start <= MAX_REGION_BYTES) {
+                chunkRegions[end++] = regions.size();
+            }
+            regionOffsets[regions.size()] = start;
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, start, chunkEnd(end - 1) - start);
+            region.order(RecordFormat.ORDER);
+            regions.add(region);
+            c = end;
+        }
+    }
+    
+    private long chunkEnd(int chunk) {
+        return chunkOffsets[chunk] + Integer.BYTES + (long)chunkRows[chunk] * columns.length * Double.BYTES;
+    }
+    
+    /** Get the name of each column. */
+    public String[] getColumnNames() {
+        return columns;
+    }
+    
+    /** Get the index of the named column. */
+    public int getColumnIndex(String name) {
+        int column = Arrays.asList(columns).indexOf(name);
+        if (column < 0) {
+            throw new IllegalArgumentException("No column named " + name);
+        }
+        return column;
+    }
+    
+    /** Get the number of complete rows in the record. */
+    public long getNumRows() {
+        return numRows;
+    }
+    
+    /** Get the number of chunks in the record. */
+    public int getNumChunks() {
+        return numChunks;
+    }
+    
+    /** Get the index of the first row of a chunk. */
+    public long getChunkFirstRow(int chunk) {
+        return chunkFirstRows[chunk];
+    }
+    
+    /** Get the number of rows in a chunk. */
+    public int getChunkRows(int chunk) {
+        return chunkRows[chunk];
+    }
+    
+    /** Get a zero-copy view of one column of a chunk. */
+    public DoubleBuffer getChunkColumn(int chunk, int column) {
+        ByteBuffer view = regions.get(chunkRegions[chunk]).duplicate();
+        int start = (int)(chunkOffsets[chunk] - regionOffsets[chunkRegions[chunk]]) + Integer.BYTES
+                + column * chunkRows[chunk] * Double.BYTES;
+        view.position(start).limit(start + chunkRows[chunk] * Double.BYTES);
+        return view.slice().order(RecordFormat.ORDER).asDoubleBuffer();
+    }
+    
+    /** Get a single value. */
+    public double get(long row, int column) {
+        int chunk = findChunk(row);
+        return getChunkColumn(chunk, column).get((int)(row - chunkFirstRows[chunk]));
+    }
+    
+    /** Get zero-copy views of rows [fromRow, toRow) of a column, one for each chunk the window overlaps. */
+    public DoubleBuffer[] getColumnBuffers(int column, long fromRow, long toRow) {
+        checkWindow(fromRow, toRow);
+        if (fromRow == toRow) {
+            return new DoubleBuffer[0];
+        }
+        int first = findChunk(fromRow);
+        int last = findChunk(toRow - 1);
+        DoubleBuffer[] buffers = new DoubleBuffer[last - first + 1];
+        for (int c = first; c <= last; ++c) {
+            DoubleBuffer view = getChunkColumn(c, column);
+            int start = (int)(Math.max(fromRow, chunkFirstRows[c]) - chunkFirstRows[c]);
+            int end = (int)(Math.min(toRow, chunkFirstRows[c + 1]) - chunkFirstRows[c]);
+            view.position(start).limit(end);
+            buffers[c - first] = view.slice();
+        }
+        return buffers;
+    }
+    
+    /** Copy a whole column into a column vector. */
+    public DoubleMatrix getColumn(int column) {
+        return getWindow(0, numRows, column);
+    }
+    
+    /** Copy the whole named column into a column vector. */
+    public DoubleMatrix getColumn(String name) {
+        return getColumn(getColumnIndex(name));
+    }
+    
+    /** Copy rows [fromRow, toRow) of the given columns, or of every column if none are given, into a
+     * matrix. */
+    public DoubleMatrix getWindow(long fromRow, long toRow, int... selected) {
+        if (selected.length == 0) {
+            selected = new int[columns.length];
+            Arrays.setAll(selected, j -> j);
+        }
+        checkWindow(fromRow, toRow);
+        if (toRow - fromRow > Integer.MAX_VALUE / selected.length) {
+            throw new IllegalArgumentException("Window of " + (toRow - fromRow) + " rows is too large to copy");
+        }
+        int rows = (int)(toRow - fromRow);
+        DoubleMatrix window = new DoubleMatrix(rows, selected.length);
+        for (int j = 0; j < selected.length; ++j) {
+            int offset = j * rows;
+            for (DoubleBuffer buffer : getColumnBuffers(selected[j], fromRow, toRow)) {
+                int count = buffer.remaining();
+                buffer.get(window.data, offset, count);
+                offset += count;
+            }
+        }
+        return window;
+    }
+    
+    /** Compute summary statistics of rows [fromRow, toRow) of a column without copying them. */
+    public WindowStatistics getStatistics(int column, long fromRow, long toRow) {
+        WindowStatistics statistics = new WindowStatistics();
+        for (DoubleBuffer buffer : getColumnBuffers(column, fromRow, toRow)) {
+            statistics.add(buffer);
+        }
+        return statistics;
+    }
+    
+    /** Compute summary statistics of rows [fromRow, toRow) of the named column without copying them. */
+    public WindowStatistics getStatistics(String name, long fromRow, long toRow) {
+        return getStatistics(getColumnIndex(name), fromRow, toRow);
+    }
+    
+    /** Get the first row at which an ascending column, such as time, is at least value. */
+    public long lowerBound(int column, double value) {
+        long low = 0;
+        long high = numRows;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (get(mid, column) < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /** Get the index of the chunk containing a row. */
+    private int findChunk(long row) {
+        if (row < 0 || row >= numRows) {
+            throw new IndexOutOfBoundsException("Row " + row + " is outside the record of " + numRows + " rows");
+        }
+        int low = 0;
+        int high = numChunks - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (chunkFirstRows[mid] <= row) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+    
+    private void checkWindow(long fromRow, long toRow) {
+        if (fromRow < 0 || toRow > numRows || fromRow > toRow) {
+            throw new IllegalArgumentException("Invalid window [" + fromRow + ", " + toRow + ") of " + numRows + " rows");
+        }
+    }
+    
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(RecordFormat.ORDER);
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position + buffer.position());
+            if (count < 0) {
+                throw new IOException("Unexpected end of record file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+    
+    /** Close the file. Views already returned remain valid until they are garbage collected. */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,48 @@
+package expresscogs.recording;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.jblas.DoubleMatrix;
+
+/**
+ * RecordExport converts binary record files to CSV for tools which cannot read the binary format. Values
+ * are written at full precision. Usage: RecordExport input.rec [output.csv]
+ */
+public class RecordExport {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: RecordExport input.rec [output.csv]");
+            System.exit(1);
+        }
+        Path input = Paths.get(args[0]);
+        Path output = args.length > 1 ? Paths.get(args[1]) : Paths.get(args[0].replaceAll("\\.rec$", "") + ".csv");
+        exportToCsv(input, output);
+    }
+    
+    /** Write a record file as CSV with a header row of column names, one chunk at a time. */
+    public static void exportToCsv(Path input, Path output) throws IOException {
+        try (RecordReader reader = new RecordReader(input);
+                BufferedWriter writer = Files.newBufferedWriter(output)) {
+            writer.write(String.join(",", reader.getColumnNames()));
+            writer.newLine();
+            StringBuilder line = new StringBuilder();
+            for (DoubleMatrix chunk = reader.readChunk(); chunk != null; chunk = reader.readChunk()) {
+                for (int i = 0; i < chunk.rows; ++i) {
+                    line.setLength(0);
+                    for (int j = 0; j < chunk.columns; ++j) {
+                        if (j > 0) {
+                            line.append(',');
+                        }
+                        line.append(chunk.get(i, j));
+                    }
+                    writer.write(line.toString());
+                    writer.newLine();
+                }
+            }
+        }
+    }
+}
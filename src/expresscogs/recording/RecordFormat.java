@@ -0,0 +1,26 @@
+package expresscogs.recording;
+
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * RecordFormat describes the binary columnar record file layout shared by RecordWriter and RecordReader.
+ * All values are little-endian.
+ * 
+ * <pre>
+ * header: magic "XCOGSREC" (8 bytes), version (int), number of columns (int),
+ *         then for each column its name as a UTF-8 length (short) and bytes
+ * chunk:  number of rows (int), then for each column in order, that many doubles
+ * </pre>
+ * 
+ * Chunks follow the header until the end of the file, so a record can be written as it is produced.
+ */
+final class RecordFormat {
+    static final byte[] MAGIC = "XCOGSREC".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    static final Charset NAME_CHARSET = StandardCharsets.UTF_8;
+    
+    private RecordFormat() {}
+}
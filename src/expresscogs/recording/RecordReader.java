@@ -0,0 +1,150 @@
+package expresscogs.recording;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jblas.DoubleMatrix;
+
+/**
+ * RecordReader reads a binary columnar record file (see RecordFormat) written by RecordWriter.
+ */
+public class RecordReader implements Closeable {
+    /** Read a whole record file into a matrix with one column per record column. */
+    public static DoubleMatrix read(Path file) throws IOException {
+        try (RecordReader reader = new RecordReader(file)) {
+            return reader.readAll();
+        }
+    }
+    
+    private FileChannel channel;
+    private String[] columns;
+    private long dataStart;
+    
+    public RecordReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        readHeader();
+    }
+    
+    private void readHeader() throws IOException {
+        ByteBuffer fixed = readFully(RecordFormat.MAGIC.length + 2 * Integer.BYTES);
+        byte[] magic = new byte[RecordFormat.MAGIC.length];
+        fixed.get(magic);
+        if (!Arrays.equals(magic, RecordFormat.MAGIC)) {
+            throw new IOException("Not a record file");
+        }
+        int version = fixed.getInt();
+        if (version != RecordFormat.VERSION) {
+            throw new IOException("Unsupported record version " + version);
+        }
+        columns = new String[fixed.getInt()];
+        for (int j = 0; j < columns.length; ++j) {
+            int length = readFully(Short.BYTES).getShort() & 0xFFFF;
+            columns[j] = new String(readFully(length).array(), RecordFormat.NAME_CHARSET);
+        }
+        dataStart = channel.position();
+    }
+    
+    /** Get the name of each column. */
+    public String[] getColumnNames() {
+        return columns;
+    }
+    
+    /** Get the index of the named column, or -1 if there is no such column. */
+    public int getColumnIndex(String name) {
+        return Arrays.asList(columns).indexOf(name);
+    }
+    
+    /** Read every row into a matrix with one column per record column. */
+    public DoubleMatrix readAll() throws IOException {
+        channel.position(dataStart);
+        List<DoubleMatrix> chunks = new ArrayList<DoubleMatrix>();
+        int totalRows = 0;
+        for (DoubleMatrix chunk = readChunk(); chunk != null; chunk = readChunk()) {
+            chunks.add(chunk);
+            totalRows += chunk.rows;
+        }
+        DoubleMatrix record = new DoubleMatrix(totalRows, columns.length);
+        int row = 0;
+        for (DoubleMatrix chunk : chunks) {
+            for (int j = 0; j < columns.length; ++j) {
+                System.arraycopy(chunk.data, j * chunk.rows, record.data, j * totalRows + row, chunk.rows);
+            }
+            row += chunk.rows;
+        }
+        return record;
+    }
+    
+    /** Read the next chunk of rows into a matrix with one column per record column, or return null at the
+     * end of the record. Chunks are read in order from the first, and readAll starts again from the first. */
+    public DoubleMatrix readChunk() throws IOException {
+        if (channel.position() >= channel.size()) {
+            return null;
+        }
+        int rows = readFully(Integer.BYTES).getInt();
+        DoubleMatrix chunk = new DoubleMatrix(rows, columns.length);
+        // Chunks are stored column by column, matching the column-major layout of DoubleMatrix
+        readFully(rows * columns.length * Double.BYTES).asDoubleBuffer().get(chunk.data);
+        return chunk;
+    }
+    
+    /** Read every value of the named column. Only the row counts and the slice of the column are read
+     * from each chunk. */
+    public DoubleMatrix readColumn(String name) throws IOException {
+        int column = getColumnIndex(name);
+        if (column < 0) {
+            throw new IllegalArgumentException("No column named " + name);
+        }
+        List<long[]> chunks = new ArrayList<long[]>();
+        int totalRows = 0;
+        for (long position = dataStart; position < channel.size(); ) {
+            int rows = readFully(Integer.BYTES, position).getInt();
+            chunks.add(new long[] { position + Integer.BYTES, rows });
+            totalRows += rows;
+            position += Integer.BYTES + (long)rows * columns.length * Double.BYTES;
+        }
+        DoubleMatrix values = new DoubleMatrix(totalRows);
+        int row = 0;
+        for (long[] chunk : chunks) {
+            int rows = (int)chunk[1];
+            long start = chunk[0] + (long)column * rows * Double.BYTES;
+            readFully(rows * Double.BYTES, start).asDoubleBuffer().get(values.data, row, rows);
+            row += rows;
+        }
+        return values;
+    }
+    
+    private ByteBuffer readFully(int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(RecordFormat.ORDER);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of record file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+    
+    /** Read at the given position without moving the position of the channel. */
+    private ByteBuffer readFully(int length, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(RecordFormat.ORDER);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of record file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
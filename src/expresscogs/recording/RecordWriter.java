@@ -0,0 +1,147 @@
+package expresscogs.recording;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.jblas.DoubleMatrix;
+
+/**
+ * RecordWriter writes rows of a simulation record to a binary columnar file (see RecordFormat). Rows are
+ * buffered column by column and written through a FileChannel one chunk at a time, so values are stored
+ * exactly and the cost of saving is a few large writes.
+ */
+public class RecordWriter implements Closeable {
+    private static final int DEFAULT_CHUNK_ROWS = 4096;
+    
+    /** Write a whole record matrix, with one column name per matrix column, to a file. */
+    public static void write(Path file, String[] columns, DoubleMatrix record) throws IOException {
+        try (RecordWriter writer = new RecordWriter(file, columns)) {
+            writer.writeRows(record);
+        }
+    }
+    
+    private FileChannel channel;
+    private int numColumns;
+    private int chunkRows;
+    private ByteBuffer buffer;
+    private ByteBuffer[] chunkParts;
+    private int rows;
+    
+    public RecordWriter(Path file, String[] columns) throws IOException {
+        this(file, columns, DEFAULT_CHUNK_ROWS);
+    }
+    
+    public RecordWriter(Path file, String[] columns, int chunkRows) throws IOException {
+        this.numColumns = columns.length;
+        this.chunkRows = chunkRows;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(Integer.BYTES + chunkRows * numColumns * Double.BYTES);
+        buffer.order(RecordFormat.ORDER);
+        chunkParts = new ByteBuffer[numColumns + 1];
+        for (int k = 0; k < chunkParts.length; ++k) {
+            chunkParts[k] = buffer.duplicate();
+        }
+        writeHeader(columns);
+    }
+    
+    private void writeHeader(String[] columns) throws IOException {
+        int size = RecordFormat.MAGIC.length + 2 * Integer.BYTES;
+        byte[][] names = new byte[columns.length][];
+        for (int j = 0; j < columns.length; ++j) {
+            names[j] = columns[j].getBytes(RecordFormat.NAME_CHARSET);
+            size += Short.BYTES + names[j].length;
+        }
+        ByteBuffer header = ByteBuffer.allocate(size).order(RecordFormat.ORDER);
+        header.put(RecordFormat.MAGIC);
+        header.putInt(RecordFormat.VERSION);
+        header.putInt(columns.length);
+        for (byte[] name : names) {
+            header.putShort((short)name.length);
+            header.put(name);
+        }
+        header.flip();
+        writeFully(header);
+    }
+    
+    /** Get the number of columns in each row. */
+    public int getNumColumns() {
+        return numColumns;
+    }
+    
+    /** Append a row with one value per column. */
+    public void writeRow(double... values) throws IOException {
+        if (values.length != numColumns) {
+            throw new IllegalArgumentException("Expected " + numColumns + " values but got " + values.length);
+        }
+        for (int j = 0; j < numColumns; ++j) {
+            buffer.putDouble(Integer.BYTES + (j * chunkRows + rows) * Double.BYTES, values[j]);
+        }
+        if (++rows == chunkRows) {
+            flush();
+        }
+    }
+    
+    /** Append every row of a matrix with one column per record column. */
+    public void writeRows(DoubleMatrix record) throws IOException {
+        writeRows(record, 0, record.rows);
+    }
+    
+    /** Append rows [first, end) of a matrix with one column per record column. */
+    public void writeRows(DoubleMatrix record, int first, int end) throws IOException {
+        if (record.columns != numColumns) {
+            throw new IllegalArgumentException("Expected " + numColumns + " columns but got " + record.columns);
+        }
+        for (int start = first; start < end; ) {
+            int count = Math.min(chunkRows - rows, end - start);
+            for (int j = 0; j < numColumns; ++j) {
+                ByteBuffer column = buffer.duplicate().order(RecordFormat.ORDER);
+                column.position(Integer.BYTES + (j * chunkRows + rows) * Double.BYTES);
+                column.asDoubleBuffer().put(record.data, j * record.rows + start, count);
+            }
+            rows += count;
+            start += count;
+            if (rows == chunkRows) {
+                flush();
+            }
+        }
+    }
+    
+    /** Write any buffered rows to the file as a chunk. */
+    public void flush() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        buffer.putInt(0, rows);
+        // Columns are laid out for a full chunk, so gather the filled part of each one
+        chunkParts[0].clear().limit(Integer.BYTES);
+        for (int j = 0; j < numColumns; ++j) {
+            int start = Integer.BYTES + j * chunkRows * Double.BYTES;
+            chunkParts[j + 1].limit(start + rows * Double.BYTES).position(start);
+        }
+        long remaining = Integer.BYTES + (long)rows * numColumns * Double.BYTES;
+        while (remaining > 0) {
+            remaining -= channel.write(chunkParts);
+        }
+        rows = 0;
+    }
+    
+    private void writeFully(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package expresscogs.recording;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * SpikeFormat describes the address-event spike file layout shared by SpikeRecorder and SpikeReader.
+ * Fixed-size values are little-endian, and varints are unsigned LEB128 (seven bits per byte, low bits
+ * first).
+ * 
+ * <pre>
+ * header:  magic "XCOGSAER" (8 bytes), version (int), number of groups (int),
+ *          then for each group its name as a UTF-8 length (short) and bytes, and its size (int)
+ * block:   group (int), first step (int), last step (int), lowest neuron (int), highest neuron (int),
+ *          number of spikes (int), payload length in bytes (int), then the payload
+ * payload: for each step of the group with spikes, the step as a varint delta from the previous step
+ *          (or from the first step of the block), the number of spikes (varint), the first neuron
+ *          (varint), then the gap to each following neuron (varint)
+ * </pre>
+ * 
+ * Blocks of different groups are interleaved in the order they fill, and the blocks of each group are in
+ * step order. The blocks end at the end of the file or at a block with no spikes, as in a zero-filled
+ * tail.
+ */
+final class SpikeFormat {
+    static final byte[] MAGIC = "XCOGSAER".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    static final Charset NAME_CHARSET = StandardCharsets.UTF_8;
+    static final int BLOCK_HEADER_BYTES = 7 * Integer.BYTES;
+    static final int MAX_VARINT_BYTES = 5;
+    
+    private SpikeFormat() {}
+    
+    static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte)value);
+    }
+    
+    static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package expresscogs.recording;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SpikeReader reads an address-event spike file written by SpikeRecorder. Opening the file reads only
+ * the block headers, and queries over a range of steps and neurons of a group decode only the blocks
+ * whose ranges overlap the query.
+ */
+public class SpikeReader implements Closeable {
+    /** SpikeConsumer receives the spikes matching a query in step order. */
+    public interface SpikeConsumer {
+        void accept(int step, int neuron);
+    }
+    
+    /** BlockInfo is the header of a block and the position of its payload. */
+    private static class BlockInfo {
+        private long offset;
+        private int firstStep;
+        private int lastStep;
+        private int minNeuron;
+        private int maxNeuron;
+        private int spikes;
+        private int length;
+    }
+    
+    private FileChannel channel;
+    private String[] names;
+    private int[] sizes;
+    private List<List<BlockInfo>> blocks = new ArrayList<List<BlockInfo>>();
+    private ByteBuffer payload = ByteBuffer.allocate(0);
+    
+    public SpikeReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        long position = readHeader();
+        readBlocks(position);
+    }
+    
+    private long readHeader() throws IOException {
+        long position = 0;
+        ByteBuffer fixed = read(position, SpikeFormat.MAGIC.length + 2 * Integer.BYTES);
+        position += fixed.limit();
+        byte[] magic = new byte[SpikeFormat.MAGIC.length];
+        fixed.get(magic);
+        if (!Arrays.equals(magic, SpikeFormat.MAGIC)) {
+            throw new IOException("Not a spike file");
+        }
+        int version = fixed.getInt();
+        if (version != SpikeFormat.VERSION) {
+            throw new IOException("Unsupported spike file version " + version);
+        }
+        names = new String[fixed.getInt()];
+        sizes = new int[names.length];
+        for (int g = 0; g < names.length; ++g) {
+            int length = read(position, Short.BYTES).getShort() & 0xFFFF;
+            position += Short.BYTES;
+            ByteBuffer name = read(position, length + Integer.BYTES);
+            position += name.limit();
+            names[g] = new String(name.array(), 0, length, SpikeFormat.NAME_CHARSET);
+            sizes[g] = name.getInt(length);
+            blocks.add(new ArrayList<BlockInfo>());
+        }
+        return position;
+    }
+    
+    private void readBlocks(long position) throws IOException {
+        long size = channel.size();
+        // Stop at an empty or incomplete block, which is the unwritten tail of an interrupted recording
+        while (position + SpikeFormat.BLOCK_HEADER_BYTES <= size) {
+            ByteBuffer header = read(position, SpikeFormat.BLOCK_HEADER_BYTES);
+            int group = header.getInt();
+            BlockInfo block = new BlockInfo();
+            block.firstStep = header.getInt();
+            block.lastStep = header.getInt();
+            block.minNeuron = header.getInt();
+            block.maxNeuron = header.getInt();
+            block.spikes = header.getInt();
+            block.length = header.getInt();
+            block.offset = position + SpikeFormat.BLOCK_HEADER_BYTES;
+            if (block.spikes <= 0 || group < 0 || group >= names.length || block.offset + block.length > size) {
+                break;
+            }
+            blocks.get(group).add(block);
+            position = block.offset + block.length;
+        }
+    }
+    
+    /** Get the number of neuron groups in the recording. */
+    public int getNumGroups() {
+        return names.length;
+    }
+    
+    /** Get the name of a group. */
+    public String getGroupName(int group) {
+        return names[group];
+    }
+    
+    /** Get the number of neurons in a group. */
+    public int getGroupSize(int group) {
+        return sizes[group];
+    }
+    
+    /** Get the index of the named group, or -1 if there is no such group. */
+    public int getGroupIndex(String name) {
+        return Arrays.asList(names).indexOf(name);
+    }
+    
+    /** Get the total number of spikes recorded for a group. */
+    public long getSpikeCount(int group) {
+        long count = 0;
+        for (BlockInfo block : blocks.get(group)) {
+            count += block.spikes;
+        }
+        return count;
+    }
+    
+    /** Pass each spike of the named group in steps [fromStep, toStep) and neurons [fromNeuron, toNeuron) to
+     * the consumer. */
+    public void query(String group, int fromStep, int toStep, int fromNeuron, int toNeuron,
+            SpikeConsumer consumer) throws IOException {
+        int index = getGroupIndex(group);
+        if (index < 0) {
+            throw new IllegalArgumentException("No neuron group named " + group);
+        }
+        query(index, fromStep, toStep, fromNeuron, toNeuron, consumer);
+    }
+    
+    /** Pass each spike of a group in steps [fromStep, toStep) and neurons [fromNeuron, toNeuron) to the
+     * consumer. */
+    public void query(int group, int fromStep, int toStep, int fromNeuron, int toNeuron,
+            SpikeConsumer consumer) throws IOException {
+        List<BlockInfo> groupBlocks = blocks.get(group);
+        for (int b = firstBlock(groupBlocks, fromStep); b < groupBlocks.size(); ++b) {
+            BlockInfo block = groupBlocks.get(b);
+            if (block.firstStep >= toStep) {
+                break;
+            }
+            if (block.maxNeuron < fromNeuron || block.minNeuron >= toNeuron) {
+                continue;
+            }
+            decode(block, fromStep, toStep, fromNeuron, toNeuron, consumer);
+        }
+    }
+    
+    /** Count the spikes of a group in steps [fromStep, toStep) and neurons [fromNeuron, toNeuron). */
+    public long countSpikes(int group, int fromStep, int toStep, int fromNeuron, int toNeuron) throws IOException {
+        long[] count = new long[1];
+        query(group, fromStep, toStep, fromNeuron, toNeuron, (step, neuron) -> ++count[0]);
+        return count[0];
+    }
+    
+    /** Get the index of the first block whose last step is at or beyond step. */
+    private static int firstBlock(List<BlockInfo> groupBlocks, int step) {
+        int low = 0;
+        int high = groupBlocks.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (groupBlocks.get(mid).lastStep < step) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    private void decode(BlockInfo block, int fromStep, int toStep, int fromNeuron, int toNeuron,
+            SpikeConsumer consumer) throws IOException {
+        if (payload.capacity() < block.length) {
+            payload = ByteBuffer.allocate(block.length).order(SpikeFormat.ORDER);
+        }
+        payload.clear().limit(block.length);
+        readFully(block.offset, payload);
+        payload.flip();
+        int step = block.firstStep;
+        while (payload.hasRemaining()) {
+            step += SpikeFormat.getVarint(payload);
+            if (step >= toStep) {
+                return;
+            }
+            int count = SpikeFormat.getVarint(payload);
+            int neuron = 0;
+            for (int k = 0; k < count; ++k) {
+                neuron += SpikeFormat.getVarint(payload);
+                if (step >= fromStep && neuron >= fromNeuron && neuron < toNeuron) {
+                    consumer.accept(step, neuron);
+                }
+            }
+        }
+    }
+    
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(SpikeFormat.ORDER);
+        readFully(position, buffer);
+        buffer.flip();
+        return buffer;
+    }
+    
+    private void readFully(long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position);
+            if (count < 0) {
+                throw new IOException("Unexpected end of spike file");
+            }
+            position += count;
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,216 @@
+package expresscogs.recording;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import expresscogs.network.NeuronGroupState;
+
+/**
+ * SpikeRecorder records every spike of a set of neuron groups as address events (step, group, neuron) in
+ * the format described by SpikeFormat. Each group encodes its spikes into its own block, with steps delta
+ * encoded and neuron indices gap encoded as varints, so a spike typically costs one or two bytes. Full
+ * blocks are appended to the file with a header giving their step and neuron ranges, which lets
+ * SpikeReader skip blocks that cannot match a query.
+ *
+ * The file can be written through a FileChannel or through memory-mapped regions. Mapped regions are filled
+ * in a window buffer and each is mapped only once the window is full, so the file never extends beyond its
+ * contents and never has to be truncated while mapped (which fails on Windows). The final partial window is
+ * written through the channel when the recorder is closed.
+ */
+public class SpikeRecorder implements Closeable {
+    private static final int DEFAULT_BLOCK_BYTES = 16384;
+    private static final int MAP_BYTES = 8 << 20;
+    
+    /** Block accumulates the encoded spikes of one group until it is full. */
+    private class Block {
+        private int group;
+        private ByteBuffer payload;
+        private int firstStep;
+        private int previousStep;
+        private int minNeuron;
+        private int maxNeuron;
+        private int spikes;
+        
+        Block(int group) {
+            this.group = group;
+            payload = ByteBuffer.allocate(blockBytes).order(SpikeFormat.ORDER);
+        }
+        
+        void append(int step, int[] indices, int count) throws IOException {
+            int worstCase = (count + 2) * SpikeFormat.MAX_VARINT_BYTES;
+            if (payload.remaining() < worstCase) {
+                flush();
+                if (payload.capacity() < worstCase) {
+                    payload = ByteBuffer.allocate(worstCase).order(SpikeFormat.ORDER);
+                }
+            }
+            if (spikes == 0) {
+                firstStep = step;
+                previousStep = step;
+                minNeuron = indices[0];
+                maxNeuron = indices[count - 1];
+            }
+            // Indices are ascending, so they are stored as gaps from the previous neuron
+            SpikeFormat.putVarint(payload, step - previousStep);
+            SpikeFormat.putVarint(payload, count);
+            SpikeFormat.putVarint(payload, indices[0]);
+            for (int k = 1; k < count; ++k) {
+                SpikeFormat.putVarint(payload, indices[k] - indices[k - 1]);
+            }
+            previousStep = step;
+            minNeuron = Math.min(minNeuron, indices[0]);
+            maxNeuron = Math.max(maxNeuron, indices[count - 1]);
+            spikes += count;
+        }
+        
+        void flush() throws IOException {
+            if (spikes == 0) {
+                return;
+            }
+            blockHeader.clear();
+            blockHeader.putInt(group);
+            blockHeader.putInt(firstStep);
+            blockHeader.putInt(previousStep);
+            blockHeader.putInt(minNeuron);
+            blockHeader.putInt(maxNeuron);
+            blockHeader.putInt(spikes);
+            blockHeader.putInt(payload.position());
+            blockHeader.flip();
+            payload.flip();
+            write(blockHeader);
+            write(payload);
+            payload.clear();
+            spikes = 0;
+        }
+    }
+    
+    private List<? extends NeuronGroupState> groups;
+    private int blockBytes;
+    private Block[] blocks;
+    private ByteBuffer blockHeader;
+    private FileChannel channel;
+    private boolean mapped;
+    private ByteBuffer window;
+    private long position;
+    private long spikeCount;
+    
+    public SpikeRecorder(Path file, List<? extends NeuronGroupState> groups) throws IOException {
+        this(file, groups, false);
+    }
+    
+    public SpikeRecorder(Path file, List<? extends NeuronGroupState> groups, boolean mapped) throws IOException {
+        this(file, groups, mapped, DEFAULT_BLOCK_BYTES);
+    }
+    
+    public SpikeRecorder(Path file, List<? extends NeuronGroupState> groups, boolean mapped, int blockBytes) throws IOException {
+        this.groups = groups;
+        this.mapped = mapped;
+        this.blockBytes = blockBytes;
+        StandardOpenOption[] options = { StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING };
+        channel = FileChannel.open(file, options);
+        blockHeader = ByteBuffer.allocate(SpikeFormat.BLOCK_HEADER_BYTES).order(SpikeFormat.ORDER);
+        blocks = new Block[groups.size()];
+        for (int g = 0; g < blocks.length; ++g) {
+            blocks[g] = new Block(g);
+        }
+        writeHeader();
+    }
+    
+    private void writeHeader() throws IOException {
+        int size = SpikeFormat.MAGIC.length + 2 * Integer.BYTES;
+        byte[][] names = new byte[groups.size()][];
+        for (int g = 0; g < names.length; ++g) {
+            names[g] = groups.get(g).getName().getBytes(SpikeFormat.NAME_CHARSET);
+            size += Short.BYTES + names[g].length + Integer.BYTES;
+        }
+        ByteBuffer header = ByteBuffer.allocate(size).order(SpikeFormat.ORDER);
+        header.put(SpikeFormat.MAGIC);
+        header.putInt(SpikeFormat.VERSION);
+        header.putInt(names.length);
+        for (int g = 0; g < names.length; ++g) {
+            header.putShort((short)names[g].length);
+            header.put(names[g]);
+            header.putInt(groups.get(g).getSize());
+        }
+        header.flip();
+        write(header);
+    }
+    
+    /** Record the spikes of every group in the given step. Steps must be recorded in increasing order. */
+    public void record(int step) {
+        try {
+            for (int g = 0; g < blocks.length; ++g) {
+                NeuronGroupState group = groups.get(g);
+                int count = group.getSpikeCount();
+                if (count > 0) {
+                    blocks[g].append(step, group.getSpikeIndices(), count);
+                    spikeCount += count;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /** Get the number of spikes recorded so far. */
+    public long getSpikeCount() {
+        return spikeCount;
+    }
+    
+    /** Get the number of bytes written to the file so far, excluding spikes in blocks which are not full. */
+    public long getBytesWritten() {
+        return position;
+    }
+    
+    private void write(ByteBuffer data) throws IOException {
+        if (!mapped) {
+            while (data.hasRemaining()) {
+                position += channel.write(data, position);
+            }
+            return;
+        }
+        if (window == null) {
+            window = ByteBuffer.allocateDirect(MAP_BYTES);
+        }
+        while (data.hasRemaining()) {
+            int count = Math.min(data.remaining(), window.remaining());
+            ByteBuffer part = data.duplicate();
+            part.limit(part.position() + count);
+            window.put(part);
+            data.position(data.position() + count);
+            position += count;
+            if (!window.hasRemaining()) {
+                // Mapping the full window extends the file by exactly its contents
+                window.flip();
+                channel.map(FileChannel.MapMode.READ_WRITE, position - window.limit(), window.limit()).put(window);
+                window.clear();
+            }
+        }
+    }
+    
+    /** Write the remaining blocks and close the file. */
+    @Override
+    public void close() throws IOException {
+        try {
+            for (Block block : blocks) {
+                block.flush();
+            }
+            if (window != null) {
+                window.flip();
+                for (long start = position - window.limit(); window.hasRemaining(); ) {
+                    start += channel.write(window, start);
+                }
+                window = null;
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
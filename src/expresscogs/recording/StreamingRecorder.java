@@ -0,0 +1,163 @@
+package expresscogs.recording;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.jblas.DoubleMatrix;
+
+/**
+ * StreamingRecorder records rows of a simulation as it runs and streams them to a binary record file (see
+ * RecordWriter). Rows are filled into fixed-size chunks, and each full chunk is handed to a background
+ * thread through a bounded queue, which writes and flushes it before returning the chunk for reuse. Heap
+ * use is therefore constant whatever the length of the run. If the process dies, the rows which are lost are
+ * those in the chunk being filled, the chunks still queued and the chunk being written, which is at most
+ * queuedChunks + 2 chunks (three chunks of 4096 rows with the defaults). When the writer falls behind, endRow
+ * blocks until a chunk is free rather than growing the queue.
+ *
+ * The recorder must be closed to write the final partial chunk and stop the writer thread.
+ */
+public class StreamingRecorder implements Closeable {
+    private static final int DEFAULT_CHUNK_ROWS = 4096;
+    private static final int DEFAULT_QUEUED_CHUNKS = 1;
+    
+    /** Chunk holds a block of rows stored column by column. */
+    private static class Chunk {
+        private DoubleMatrix values;
+        private int rows;
+        
+        Chunk(int rows, int columns) {
+            values = new DoubleMatrix(rows, columns);
+        }
+    }
+    
+    // Sentinel which tells the writer thread to finish
+    private static final Chunk END = new Chunk(0, 0);
+    
+    private RecordWriter writer;
+    private int numColumns;
+    private int chunkRows;
+    private BlockingQueue<Chunk> free;
+    private BlockingQueue<Chunk> full;
+    private Chunk current;
+    private long rowCount;
+    private Thread thread;
+    private volatile Throwable failure;
+    private boolean closed;
+    
+    public StreamingRecorder(Path file, String[] columns) throws IOException {
+        this(file, columns, DEFAULT_CHUNK_ROWS, DEFAULT_QUEUED_CHUNKS);
+    }
+    
+    public StreamingRecorder(Path file, String[] columns, int chunkRows, int queuedChunks) throws IOException {
+        if (chunkRows < 1 || queuedChunks < 1) {
+            throw new IllegalArgumentException("Chunk rows and queued chunks must be positive");
+        }
+        this.numColumns = columns.length;
+        this.chunkRows = chunkRows;
+        writer = new RecordWriter(file, columns, chunkRows);
+        // One chunk is being filled, up to queuedChunks wait for the writer and one is being written
+        free = new ArrayBlockingQueue<Chunk>(queuedChunks + 2);
+        full = new ArrayBlockingQueue<Chunk>(queuedChunks + 1);
+        for (int k = 0; k < queuedChunks + 1; ++k) {
+            free.add(new Chunk(chunkRows, numColumns));
+        }
+        current = new Chunk(chunkRows, numColumns);
+        thread = new Thread(this::writeChunks, "recorder-" + file.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /** Get the number of columns in each row. */
+    public int getNumColumns() {
+        return numColumns;
+    }
+    
+    /** Get the number of rows completed so far. */
+    public long getRowCount() {
+        return rowCount;
+    }
+    
+    /** Set a value in the current row. Values which are not set in a row are zero. */
+    public void put(int column, double value) {
+        current.values.data[column * chunkRows + current.rows] = value;
+    }
+    
+    /** Complete the current row and start a new one. */
+    public void endRow() {
+        ++rowCount;
+        if (++current.rows == chunkRows) {
+            handOff();
+        }
+    }
+    
+    /** Record a row with one value per column. */
+    public void writeRow(double... values) {
+        if (values.length != numColumns) {
+            throw new IllegalArgumentException("Expected " + numColumns + " values but got " + values.length);
+        }
+        for (int j = 0; j < numColumns; ++j) {
+            put(j, values[j]);
+        }
+        endRow();
+    }
+    
+    private void handOff() {
+        try {
+            full.put(current);
+            current = free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the recorder", e);
+        }
+        current.values.fill(0);
+        current.rows = 0;
+    }
+    
+    private void writeChunks() {
+        try {
+            for (Chunk chunk = full.take(); chunk != END; chunk = full.take()) {
+                // After a failure, keep recycling chunks so that the simulation is never blocked
+                if (failure == null) {
+                    try {
+                        writer.writeRows(chunk.values, 0, chunk.rows);
+                        writer.flush();
+                    } catch (Throwable e) {
+                        failure = e;
+                    }
+                }
+                free.put(chunk);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /** Write the rows recorded so far and stop the writer thread. Throws the first error from the writer. */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (current.rows > 0) {
+                full.put(current);
+            }
+            full.put(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the recorder", e);
+        } finally {
+            writer.close();
+        }
+        if (failure instanceof IOException) {
+            throw (IOException)failure;
+        } else if (failure != null) {
+            throw new IOException("Recorder writer failed", failure);
+        }
+    }
+}
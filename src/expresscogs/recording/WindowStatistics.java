@@ -0,0 +1,73 @@
+package expresscogs.recording;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * WindowStatistics accumulates summary statistics of the values in a window of a record column, one
+ * buffer at a time, so the window is never copied.
+ */
+public class WindowStatistics {
+    private long count;
+    private double mean;
+    private double sumSquares;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    
+    /** Add the remaining values of a buffer without changing its position. */
+    public void add(DoubleBuffer values) {
+        for (int k = values.position(); k < values.limit(); ++k) {
+            add(values.get(k));
+        }
+    }
+    
+    /** Add a single value. */
+    public void add(double value) {
+        // Welford's update keeps the variance accurate for long windows with a large mean
+        ++count;
+        double delta = value - mean;
+        mean += delta / count;
+        sumSquares += delta * (value - mean);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+    
+    /** Get the number of values in the window. */
+    public long getCount() {
+        return count;
+    }
+    
+    /** Get the sum of the values in the window. */
+    public double getSum() {
+        return mean * count;
+    }
+    
+    /** Get the mean of the values in the window, or NaN if it is empty. */
+    public double getMean() {
+        return count > 0 ? mean : Double.NaN;
+    }
+    
+    /** Get the sample variance of the values in the window, or NaN if it has fewer than two values. */
+    public double getVariance() {
+        return count > 1 ? sumSquares / (count - 1) : Double.NaN;
+    }
+    
+    /** Get the sample standard deviation of the values in the window. */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+    
+    /** Get the smallest value in the window. */
+    public double getMin() {
+        return min;
+    }
+    
+    /** Get the largest value in the window. */
+    public double getMax() {
+        return max;
+    }
+    
+    @Override
+    public String toString() {
+        return "n=" + count + " mean=" + getMean() + " sd=" + getStandardDeviation() + " min=" + min + " max=" + max;
+    }
+}
@@ -5,7 +5,6 @@ import expresscogs.gui.ResizingSeparator;
 import expresscogs.gui.SimulationTool;
 import expresscogs.gui.SimulationView;
 import expresscogs.gui.SynapseScalingTool;
-import expresscogs.network.Network;
 import expresscogs.utility.BufferedPlot;
 import expresscogs.utility.LocalFieldPotentialPlot;
 import expresscogs.utility.SpikeRasterPlot;
@@ -89,7 +88,7 @@ public class RecurrentApplication extends Application implements SimulationView
         
         stage.setOnCloseRequest(event -> {
             simulation.stop();
-            Network.shutdownUpdater();
+            simulation.getNetwork().shutdown();
         });
         
         stage.show();
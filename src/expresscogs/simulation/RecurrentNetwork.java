@@ -4,6 +4,7 @@ import expresscogs.gui.SimulationView;
 import expresscogs.network.*;
 import expresscogs.network.synapses.NeighborhoodTopology;
 import expresscogs.network.synapses.SynapseFactory;
+import expresscogs.network.synapses.SynapseFactory.SynapseStorage;
 import expresscogs.network.synapses.SynapseGroup;
 import expresscogs.network.synapses.SynapseGroupTopology;
 
@@ -29,6 +30,8 @@ public class RecurrentNetwork extends Simulation {
     private SynapseGroupTopology wide = new NeighborhoodTopology(0.1, 0.2);
     private double weightScale = 0.25e-4;
     private int synapseDelay = 1;
+    // Connectivity is around 10%, so only the existing synapses are stored
+    private SynapseStorage storage = SynapseStorage.SPARSE;
     
     // Input generators
     private AutoCorrelatedNoiseGenerator excNoise;
@@ -45,18 +48,19 @@ public class RecurrentNetwork extends Simulation {
     public RecurrentNetwork(SimulationView view) {
         super(view);
         network = new Network();
+        RandomStream random = network.splitRandom();
         
         // Create the neuron groups and add them to the network
         excNoise = new AutoCorrelatedNoiseGenerator(highBackgroundInput);
         inhNoise = new UniformNoiseGenerator(lowBackgroundInput);
-        exc = NeuronFactory.createLifExcitatory("EXC", groupSize, excNoise);
-        inh = NeuronFactory.createLifInhibitory("INH", groupSize, inhNoise);
+        exc = NeuronFactory.createLifExcitatory("EXC", groupSize, excNoise, random);
+        inh = NeuronFactory.createLifInhibitory("INH", groupSize, inhNoise, random);
         network.addNeuronGroups(exc, inh);
         
         // Setup the selection pathway synapse groups
-        SynapseGroup excExc = SynapseFactory.connectWithDelay(exc, exc, narrow, 1 * weightScale, synapseDelay);
-        SynapseGroup excInh = SynapseFactory.connectWithDelay(exc, inh, narrow, 1 * weightScale, synapseDelay);
-        SynapseGroup inhExc = SynapseFactory.connectWithDelay(inh, exc, narrow, 1 * weightScale, synapseDelay);
+        SynapseGroup excExc = SynapseFactory.connectWithDelay("EXC_EXC", exc, exc, narrow, 1 * weightScale, synapseDelay, storage, random);
+        SynapseGroup excInh = SynapseFactory.connectWithDelay("EXC_INH", exc, inh, narrow, 1 * weightScale, synapseDelay, storage, random);
+        SynapseGroup inhExc = SynapseFactory.connectWithDelay("INH_EXC", inh, exc, narrow, 1 * weightScale, synapseDelay, storage, random);
         network.addSynapseGroups(excExc, excInh, inhExc);
         
         // Create the sensors
@@ -84,8 +88,8 @@ public class RecurrentNetwork extends Simulation {
         record.put(getStep(), 0, getTime());
         record.put(getStep(), 1, excNoise.getScale());
         record.put(getStep(), 2, inhNoise.getScale());
-        record.put(getStep(), 3, exc.getSpikes().sum());
-        record.put(getStep(), 4, inh.getSpikes().sum());
+        record.put(getStep(), 3, exc.getSpikeCount());
+        record.put(getStep(), 4, inh.getSpikeCount());
         record.put(getStep(), 10, lfpSensor.getLfp());
     }
     
@@ -5,7 +5,6 @@ import expresscogs.gui.SimulationTool;
 import expresscogs.gui.SimulationView;
 import expresscogs.gui.StimulusGeneratorTool;
 import expresscogs.gui.SynapseScalingTool;
-import expresscogs.network.Network;
 import expresscogs.utility.BufferedPlot;
 import expresscogs.utility.LocalFieldPotentialPlot;
 import expresscogs.utility.NeuralFieldPlot;
@@ -96,9 +95,12 @@ public class SignalSelectionApplication extends Application implements Simulatio
         signalPlot = new SignalSelectionPlot(simulation.getSignalSensor());
         addPlot(plotContainer, signalPlot, "Signal Selection Plot", false);
         
+        // The sensor plots are buffered on the pipeline thread, which owns the sensors
+        simulation.getSensorPipeline().addStage((step, t) -> updateSensorBuffers(t));
+        
         stage.setOnCloseRequest(event -> {
             simulation.stop();
-            Network.shutdownUpdater();
+            simulation.getNetwork().shutdown();
         });
         
         stage.show();
@@ -129,15 +131,15 @@ public class SignalSelectionApplication extends Application implements Simulatio
     
     @Override
     public void update() {
-        updateBuffers();
+        rasterPlot.updateBuffers(simulation.getTime());
         if (simulation.getStep() % stepsBetweenView == 0) {
+            // Wait for the sensors to reach the current step, after which they are idle until the next publish
+            simulation.getSensorPipeline().drain();
             updatePlots();
         }
     }
     
-    private void updateBuffers() {
-        final double t = simulation.getTime();
-        rasterPlot.updateBuffers(t);
+    private void updateSensorBuffers(double t) {
         fieldPlot.updateBuffers(t);
         lfpPlot.updateBuffers(t);
         signalPlot.updateBuffers(t);
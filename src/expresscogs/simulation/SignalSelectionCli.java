@@ -1,21 +1,18 @@
 package expresscogs.simulation;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
-import org.jblas.DoubleMatrix;
-
 import expresscogs.gui.SimulationView;
-import expresscogs.network.Network;
+import expresscogs.network.ComputeBackend;
+import expresscogs.network.NetworkScheduler;
+import expresscogs.recording.SpikeRecorder;
+import expresscogs.recording.StreamingRecorder;
 
 public class SignalSelectionCli implements SimulationView {
     public enum Variant {
@@ -45,6 +42,25 @@ public class SignalSelectionCli implements SimulationView {
         }
     }
     
+    /** How each simulation updates its network. Simulations already run concurrently on the executor
+     * threads, so by default each one is updated serially. */
+    public enum Scheduler {
+        SERIAL,
+        FORK_JOIN,
+        DEDICATED;
+        
+        public NetworkScheduler create(int concurrentSims) {
+            switch (this) {
+            case FORK_JOIN:
+                return NetworkScheduler.forkJoin();
+            case DEDICATED:
+                return NetworkScheduler.dedicated(Runtime.getRuntime().availableProcessors() / concurrentSims);
+            default:
+                return NetworkScheduler.serial();
+            }
+        }
+    }
+    
     private static String name;
     
     public static void main(String[] args) throws InterruptedException {
@@ -53,21 +69,24 @@ public class SignalSelectionCli implements SimulationView {
         int steps = args.length > 2 ? Integer.parseInt(args[2]) : 60000;
         int threads = args.length > 3 ? Integer.parseInt(args[3]) : 2;
         Variant variant = args.length > 4 ? Variant.valueOf(args[4]) : Variant.FULL_MODEL;
+        ComputeBackend backend = args.length > 5 ? ComputeBackend.valueOf(args[5]) : ComputeBackend.JBLAS;
+        long seed = args.length > 6 ? Long.parseLong(args[6]) : System.nanoTime();
+        Scheduler scheduler = args.length > 7 ? Scheduler.valueOf(args[7]) : Scheduler.SERIAL;
         
         ExecutorService executor = Executors.newFixedThreadPool(threads);
         List<Callable<Void>> runs = new LinkedList<Callable<Void>>();
         for (int i = 0; i < sims; ++i) {
             final String id = name + i;
+            final long runSeed = seed + i;
             runs.add(() -> {
-                SignalSelectionCli cli = new SignalSelectionCli(id, steps, variant);
+                SignalSelectionCli cli = new SignalSelectionCli(id, steps, variant, backend, runSeed,
+                        scheduler.create(Math.min(sims, threads)));
                 cli.run();
-                cli.saveToCsv();
                 return null;
             });
         }
         executor.invokeAll(runs);
         executor.shutdown();
-        Network.shutdownUpdater();
     }
     
     private SignalSelectionNetwork simulation;
@@ -76,11 +95,14 @@ public class SignalSelectionCli implements SimulationView {
     private int timesteps = 10000;
     private long startTime;
     
-    public SignalSelectionCli(String id, int timesteps, Variant variant) {
+    public SignalSelectionCli(String id, int timesteps, Variant variant, ComputeBackend backend, long seed,
+            NetworkScheduler scheduler) {
         this.id = id;
         this.timesteps = timesteps;
-        System.out.println("Start: " + id + " for " + (timesteps / 1000.0) + "s");
-        simulation = new SignalSelectionNetwork(this);
+        System.out.println("Start: " + id + " for " + (timesteps / 1000.0) + "s with seed " + seed);
+        simulation = new SignalSelectionNetwork(this, seed);
+        simulation.getNetwork().setBackend(backend);
+        simulation.getNetwork().setScheduler(scheduler);
         Variant.apply(simulation, variant);
     }
     
@@ -92,48 +114,38 @@ public class SignalSelectionCli implements SimulationView {
         stepsBetweenView = value;
     }
     
+    /** Run the simulation, streaming its record in the binary columnar format. Use RecordExport to convert it
+     * to CSV. */
     public void run() {
-        startTime = System.currentTimeMillis();
-        Network.setUpdateThreads(1);
-        simulation.runInThread(timesteps);
-        System.out.println("Finish: " + id + " in " + getElapsedTime() + "s");
-        simulation.stop();
-        simulation.getRecord();
-    }
-    
-    @Override
-    public void update() {
-        if (simulation.getStep() % stepsBetweenView == 0 || simulation.getStep() == timesteps - 1) {
-            System.out.println("Update: " + id + " at " + simulation.getTime() + "s in " + getElapsedTime() + "s");
-        }
-    }
-    
-    public void saveToCsv() {
         File directory = new File(System.getProperty("user.home") + "/ExpressCogs/" + name);
         if (!directory.exists()) {
             directory.mkdirs();
         }
-        File file = new File(System.getProperty("user.home") + "/ExpressCogs/" + name + "/" + id + ".csv");
-        System.out.println("Saving: " + id + " as " + file.toString());
-        NumberFormat format = DecimalFormat.getNumberInstance();
-        try {
-            DoubleMatrix record = simulation.getRecord();
-            BufferedWriter writer = new BufferedWriter(new FileWriter(file));
-            writer.write("t,snr,pos,thl,ctx,str,st2,stn,gpi,gpe,lfp,sig,nos");
-            for (int i = 0; i < 25; ++i) {
-                writer.write(",n" + i);
-            }
-            writer.newLine();
-            for (int i = 0; i < record.rows; ++i) {
-                for (int j = 0; j < record.columns; ++j) {
-                    writer.write((j == 0 ? "" : ",") + format.format(record.get(i, j)));
-                }
-                writer.newLine();
-            }
-            writer.flush();
-            writer.close();
+        File file = new File(directory, id + ".rec");
+        File spikeFile = new File(directory, id + ".aer");
+        System.out.println("Recording: " + id + " to " + file.toString() + " and " + spikeFile.toString());
+        try (StreamingRecorder recorder = new StreamingRecorder(file.toPath(), SignalSelectionNetwork.RECORD_COLUMNS);
+                SpikeRecorder spikeRecorder = new SpikeRecorder(spikeFile.toPath(),
+                        simulation.getSensorGroups())) {
+            simulation.setRecorder(recorder);
+            simulation.setSpikeRecorder(spikeRecorder);
+            startTime = System.currentTimeMillis();
+            simulation.runInThread(timesteps);
+            System.out.println("Finish: " + id + " in " + getElapsedTime() + "s");
+            simulation.stop();
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            simulation.setRecorder(null);
+            simulation.setSpikeRecorder(null);
+            simulation.getNetwork().shutdown();
+        }
+    }
+    
+    @Override
+    public void update() {
+        if (simulation.getStep() % stepsBetweenView == 0 || simulation.getStep() == timesteps - 1) {
+            System.out.println("Update: " + id + " at " + simulation.getTime() + "s in " + getElapsedTime() + "s");
         }
     }
     
@@ -4,16 +4,21 @@ import expresscogs.gui.SimulationView;
 import expresscogs.network.*;
 import expresscogs.network.synapses.NeighborhoodTopology;
 import expresscogs.network.synapses.SynapseFactory;
+import expresscogs.network.synapses.SynapseFactory.SynapseStorage;
 import expresscogs.network.synapses.SynapseGroup;
 import expresscogs.network.synapses.SynapseGroupTopology;
+import expresscogs.recording.SpikeRecorder;
+import expresscogs.recording.StreamingRecorder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleSupplier;
 
 import org.jblas.DoubleMatrix;
-import org.jblas.ranges.IntervalRange;
-import org.jblas.ranges.PointRange;
-import org.jblas.util.Random;
 
 import expresscogs.utility.LocalFieldPotentialSensor;
 import expresscogs.utility.NeuralFieldSensor;
+import expresscogs.utility.SensorPipeline;
 import expresscogs.utility.SignalDetectionSensor;
 
 /**
@@ -29,6 +34,13 @@ import expresscogs.utility.SignalDetectionSensor;
  * for the majority of the synaptic pathways in the model.
  */
 public class SignalSelectionNetwork extends Simulation {
+    /** Names of the columns of the record, in order. */
+    public static final String[] RECORD_COLUMNS = {
+        "t", "snr", "pos", "thl", "ctx", "str", "st2", "stn", "gpi", "gpe", "lfp", "sig", "nos",
+        "n0", "n1", "n2", "n3", "n4", "n5", "n6", "n7", "n8", "n9", "n10", "n11", "n12",
+        "n13", "n14", "n15", "n16", "n17", "n18", "n19", "n20", "n21", "n22", "n23", "n24"
+    };
+    
     private Network network;
     private double lowBackgroundInput = 0.1e-3;
     private double highBackgroundInput = 0.25e-3;
@@ -37,6 +49,8 @@ public class SignalSelectionNetwork extends Simulation {
     private SynapseGroupTopology wide = new NeighborhoodTopology(0.1, 0.5);
     private double weightScale = 1e-4;
     private int synapseDelay = 10;
+    // Connectivity is around 10%, so only the existing synapses are stored
+    private SynapseStorage storage = SynapseStorage.SPARSE;
     private TopologicalStimulusGenerator stimulus;
     
     // Neuron groups
@@ -50,87 +64,125 @@ public class SignalSelectionNetwork extends Simulation {
     
     // Sensors for recording from neurons
     private LocalFieldPotentialSensor lfpSensor;
-    private DoubleMatrix spikeSample;
+    private int[] spikeSample;
     private NeuralFieldSensor fieldSensor;
     private SignalDetectionSensor signalSensor;
-    private DoubleMatrix record;
+    private SensorPipeline pipeline = new SensorPipeline(8);
+    private List<NeuronGroupState> sensorGroups = new ArrayList<NeuronGroupState>();
+    private DoubleSupplier signalToNoiseRatio;
+    private DoubleSupplier stimulusPosition;
+    private volatile StreamingRecorder recorder;
+    private volatile SpikeRecorder spikeRecorder;
     
     public SignalSelectionNetwork(SimulationView view) {
+        this(view, new RandomStream().nextLong());
+    }
+    
+    /** Create the network from a seed. Every random draw, from the initial state and connections to the
+     * inputs, follows from the seed, so a run can be reproduced from it. */
+    public SignalSelectionNetwork(SimulationView view, long seed) {
         super(view);
         network = new Network();
+        network.setSeed(seed);
+        RandomStream random = network.splitRandom();
         
         // Create the neuron groups and add them to the network
         stimulus = new TopologicalStimulusGenerator();
-        thl = NeuronFactory.createLifExcitatory("THL", groupSize, stimulus);
-        ctx = NeuronFactory.createLifExcitatory("CTX", groupSize, highBackgroundInput);
-        str = NeuronFactory.createLifInhibitory("STR", groupSize, highBackgroundInput);
-        st2 = NeuronFactory.createLifInhibitory("ST2", groupSize, highBackgroundInput);
-        stn = NeuronFactory.createLifExcitatory("STN", groupSize, highBackgroundInput);
-        gpi = NeuronFactory.createLifInhibitory("GPI", groupSize / 4, highBackgroundInput);
-        gpe = NeuronFactory.createLifInhibitory("GPE", groupSize / 4, highBackgroundInput);
+        thl = NeuronFactory.createLifExcitatory("THL", groupSize, stimulus, random);
+        ctx = NeuronFactory.createLifExcitatory("CTX", groupSize, highBackgroundInput, random);
+        str = NeuronFactory.createLifInhibitory("STR", groupSize, highBackgroundInput, random);
+        st2 = NeuronFactory.createLifInhibitory("ST2", groupSize, highBackgroundInput, random);
+        stn = NeuronFactory.createLifExcitatory("STN", groupSize, highBackgroundInput, random);
+        gpi = NeuronFactory.createLifInhibitory("GPI", groupSize / 4, highBackgroundInput, random);
+        gpe = NeuronFactory.createLifInhibitory("GPE", groupSize / 4, highBackgroundInput, random);
         network.addNeuronGroups(thl, ctx, str, st2, stn, gpi, gpe);
         
         // Setup the selection pathway synapse groups
-        SynapseGroup thlCtx = SynapseFactory.connectWithDelay(thl, ctx, narrow, 1 * weightScale, synapseDelay);
-        SynapseGroup ctxStr = SynapseFactory.connectWithDelay(ctx, str, narrow, 0.5 * weightScale, synapseDelay);
-        SynapseGroup ctxStn = SynapseFactory.connectWithDelay(ctx, stn, wide, 1 * weightScale, synapseDelay);
-        SynapseGroup strGpi = SynapseFactory.connectWithDelay(str, gpi, narrow, 0.5 * weightScale, synapseDelay);
-        SynapseGroup stnGpi = SynapseFactory.connectWithDelay(stn, gpi, wide, 1 * weightScale, synapseDelay);
-        SynapseGroup gpiThl = SynapseFactory.connectWithDelay(gpi, thl, narrow, 1 * weightScale, synapseDelay);
+        SynapseGroup thlCtx = SynapseFactory.connectWithDelay("THL_CTX", thl, ctx, narrow, 1 * weightScale, synapseDelay, storage, random);
+        SynapseGroup ctxStr = SynapseFactory.connectWithDelay("CTX_STR", ctx, str, narrow, 0.5 * weightScale, synapseDelay, storage, random);
+        SynapseGroup ctxStn = SynapseFactory.connectWithDelay("CTX_STN", ctx, stn, wide, 1 * weightScale, synapseDelay, storage, random);
+        SynapseGroup strGpi = SynapseFactory.connectWithDelay("STR_GPI", str, gpi, narrow, 0.5 * weightScale, synapseDelay, storage, random);
+        SynapseGroup stnGpi = SynapseFactory.connectWithDelay("STN_GPI", stn, gpi, wide, 1 * weightScale, synapseDelay, storage, random);
+        SynapseGroup gpiThl = SynapseFactory.connectWithDelay("GPI_THL", gpi, thl, narrow, 1 * weightScale, synapseDelay, storage, random);
         network.addSynapseGroups(thlCtx, ctxStr, ctxStn, strGpi, stnGpi, gpiThl);
         
         // Setup the control pathway synapse groups
-        SynapseGroup ctxSt2 = SynapseFactory.connectWithDelay(ctx, st2, narrow, 0.5 * weightScale, synapseDelay);
-        SynapseGroup st2Gpe = SynapseFactory.connectWithDelay(st2, gpe, narrow, 0.5 * weightScale, synapseDelay);
-        SynapseGroup stnGpe = SynapseFactory.connectWithDelay(stn, gpe, wide, 1 * weightScale, synapseDelay);
-        SynapseGroup gpeStn = SynapseFactory.connectWithDelay(gpe, stn, narrow, 0.5 * weightScale, synapseDelay);
-        SynapseGroup gpeGpi = SynapseFactory.connectWithDelay(gpe, gpi, narrow, 0.5 * weightScale, synapseDelay);
+        SynapseGroup ctxSt2 = SynapseFactory.connectWithDelay("CTX_ST2", ctx, st2, narrow, 0.5 * weightScale, synapseDelay, storage, random);
+        SynapseGroup st2Gpe = SynapseFactory.connectWithDelay("ST2_GPE", st2, gpe, narrow, 0.5 * weightScale, synapseDelay, storage, random);
+        SynapseGroup stnGpe = SynapseFactory.connectWithDelay("STN_GPE", stn, gpe, wide, 1 * weightScale, synapseDelay, storage, random);
+        SynapseGroup gpeStn = SynapseFactory.connectWithDelay("GPE_STN", gpe, stn, narrow, 0.5 * weightScale, synapseDelay, storage, random);
+        SynapseGroup gpeGpi = SynapseFactory.connectWithDelay("GPE_GPI", gpe, gpi, narrow, 0.5 * weightScale, synapseDelay, storage, random);
         network.addSynapseGroups(ctxSt2, st2Gpe, stnGpe, gpeStn, gpeGpi);
         
-        // Create the sensors
-        lfpSensor = new LocalFieldPotentialSensor(stn);
-        spikeSample = DoubleMatrix.zeros(stn.getSize());
-        while (spikeSample.sum() < 25) {
-            spikeSample.put(Random.nextInt(stn.getSize()), 1);
+        // Create the sensors, which analyse snapshots of the network on the pipeline thread
+        for (NeuronGroup group : network.getNeuronGroups()) {
+            sensorGroups.add(pipeline.track(group, group == stn));
         }
-        fieldSensor = new NeuralFieldSensor(ctx);
-        signalSensor = new SignalDetectionSensor(ctx, stimulus);
+        signalToNoiseRatio = pipeline.track(stimulus::getSignalToNoiseRatio);
+        stimulusPosition = pipeline.track(stimulus::getPosition);
+        DoubleSupplier stimulusWidth = pipeline.track(stimulus::getWidth);
+        lfpSensor = new LocalFieldPotentialSensor(getSensorGroup(stn));
+        DoubleMatrix sampleMask = DoubleMatrix.zeros(stn.getSize());
+        while (sampleMask.sum() < 25) {
+            sampleMask.put(random.nextInt(stn.getSize()), 1);
+        }
+        spikeSample = sampleMask.findIndices();
+        fieldSensor = new NeuralFieldSensor(getSensorGroup(ctx));
+        signalSensor = new SignalDetectionSensor(getSensorGroup(ctx), stimulusPosition, stimulusWidth);
+        pipeline.addStage(this::updateSensors);
     }
     
-    @Override
-    public void runInThread(int timesteps) {
-        record = new DoubleMatrix(timesteps, 38);
-        super.runInThread(timesteps);
+    private NeuronGroupState getSensorGroup(NeuronGroup group) {
+        return sensorGroups.get(network.getNeuronGroups().indexOf(group));
     }
     
     @Override
-    public void runAsync(int timesteps) {
-        record = new DoubleMatrix(timesteps, 38);
-        super.runAsync(timesteps);
+    public void updateModel() {
+        network.update(getStep());
+        pipeline.publish(getStep(), getTime());
     }
     
+    /** Wait for the sensors to analyse every step which has been simulated and stop the pipeline thread,
+     * which is started again if the simulation is resumed. */
     @Override
-    public void updateModel() {
-        final double t = getTime();
-        network.update(getStep());
-        
+    public void stop() {
+        super.stop();
+        pipeline.close();
+    }
+    
+    private void updateSensors(int step, double t) {
         lfpSensor.update(t);
         fieldSensor.update(t);
         signalSensor.update(t);
-        record.put(getStep(), 0, getTime());
-        record.put(getStep(), 1, stimulus.getSignalToNoiseRatio());
-        record.put(getStep(), 2, stimulus.getPosition());
-        record.put(getStep(), 3, thl.getSpikes().sum());
-        record.put(getStep(), 4, ctx.getSpikes().sum());
-        record.put(getStep(), 5, str.getSpikes().sum());
-        record.put(getStep(), 6, st2.getSpikes().sum());
-        record.put(getStep(), 7, stn.getSpikes().sum());
-        record.put(getStep(), 8, gpi.getSpikes().sum());
-        record.put(getStep(), 9, gpe.getSpikes().sum());
-        record.put(getStep(), 10, lfpSensor.getLfp());
-        record.put(getStep(), 11, signalSensor.getSignalStrength());
-        record.put(getStep(), 12, signalSensor.getNoiseStrength());
-        record.put(new PointRange(getStep()), new IntervalRange(13, 38), stn.getSpikes().get(spikeSample).transpose());
+        StreamingRecorder recorder = this.recorder;
+        if (recorder != null) {
+            recordStep(recorder, t);
+        }
+        SpikeRecorder spikeRecorder = this.spikeRecorder;
+        if (spikeRecorder != null) {
+            spikeRecorder.record(step);
+        }
+    }
+    
+    private void recordStep(StreamingRecorder recorder, double t) {
+        recorder.put(0, t);
+        recorder.put(1, signalToNoiseRatio.getAsDouble());
+        recorder.put(2, stimulusPosition.getAsDouble());
+        recorder.put(3, getSensorGroup(thl).getSpikeCount());
+        recorder.put(4, getSensorGroup(ctx).getSpikeCount());
+        recorder.put(5, getSensorGroup(str).getSpikeCount());
+        recorder.put(6, getSensorGroup(st2).getSpikeCount());
+        recorder.put(7, getSensorGroup(stn).getSpikeCount());
+        recorder.put(8, getSensorGroup(gpi).getSpikeCount());
+        recorder.put(9, getSensorGroup(gpe).getSpikeCount());
+        recorder.put(10, lfpSensor.getLfp());
+        recorder.put(11, signalSensor.getSignalStrength());
+        recorder.put(12, signalSensor.getNoiseStrength());
+        DoubleMatrix spikes = getSensorGroup(stn).getSpikes();
+        for (int k = 0; k < spikeSample.length; ++k) {
+            recorder.put(13 + k, spikes.get(spikeSample[k]));
+        }
+        recorder.endRow();
     }
     
     public Network getNetwork() {
@@ -157,7 +209,35 @@ public class SignalSelectionNetwork extends Simulation {
         return signalSensor;
     }
     
-    public DoubleMatrix getRecord() {
-        return record;
+    /** Get the snapshot views of the neuron groups, in network order, which may be read by pipeline stages. */
+    public List<NeuronGroupState> getSensorGroups() {
+        return sensorGroups;
+    }
+    
+    /** Get the pipeline which updates the sensors. The sensors may be read from its stages, or after drain
+     * while the simulation is not stepping. */
+    public SensorPipeline getSensorPipeline() {
+        return pipeline;
+    }
+    
+    /** Get the recorder which receives a row of RECORD_COLUMNS each step, or null if nothing is recorded. */
+    public StreamingRecorder getRecorder() {
+        return recorder;
+    }
+    
+    /** Set the recorder which receives a row of RECORD_COLUMNS each step. The caller closes it after the run. */
+    public void setRecorder(StreamingRecorder value) {
+        recorder = value;
+    }
+    
+    /** Get the recorder which receives every spike of every neuron group, or null if spikes are not recorded. */
+    public SpikeRecorder getSpikeRecorder() {
+        return spikeRecorder;
+    }
+    
+    /** Set the recorder which receives every spike of every neuron group. It runs in the sensor pipeline, so
+     * it should record from the sensor groups. The caller closes it after the run. */
+    public void setSpikeRecorder(SpikeRecorder value) {
+        spikeRecorder = value;
     }
 }
@@ -0,0 +1,100 @@
+package expresscogs.test;
+
+import expresscogs.network.ComputeBackend;
+import expresscogs.network.InputGenerator;
+import expresscogs.network.Network;
+import expresscogs.network.NeuronFactory;
+import expresscogs.network.NeuronFactory.NeuronModel;
+import expresscogs.network.NeuronGroup;
+import expresscogs.network.RandomStream;
+import expresscogs.network.UniformNoiseGenerator;
+import expresscogs.network.synapses.DelayDistribution;
+import expresscogs.network.synapses.SparseUniformTopology;
+import expresscogs.network.synapses.StdpSynapseGroup;
+import expresscogs.network.synapses.SynapseFactory;
+
+/**
+ * BackendBenchmark compares the steps per second of a neuron group updated by each ComputeBackend.
+ * Usage: BackendBenchmark [LIF|ADEX] [size] [steps]. The VECTOR backend is included when src-vector is
+ * compiled and the benchmark is run with --add-modules jdk.incubator.vector on JDK 16 or later.
+ *
+ * BackendBenchmark STDP [size] [steps] instead measures a Poisson source group driving a LIF target group
+ * of the given size through a plastic synapse group with 1% connectivity, i.e. size * size / 100 synapses,
+ * with both groups firing at around 10 Hz, and reports the speed relative to real time at 1 kHz.
+ */
+public class BackendBenchmark {
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("STDP")) {
+            int size = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+            int steps = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+            benchmarkStdp(size, steps);
+            return;
+        }
+        NeuronModel model = args.length > 0 ? NeuronModel.valueOf(args[0]) : NeuronModel.LIF;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+        for (ComputeBackend backend : ComputeBackend.values()) {
+            if (!backend.isAvailable()) {
+                System.out.println(backend + ": not available");
+                continue;
+            }
+            NeuronGroup neurons = create(model, size, backend);
+            run(neurons, steps / 10);
+            long start = System.nanoTime();
+            run(neurons, steps);
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            System.out.println(backend + ": " + Math.round(steps / elapsed) + " steps/s");
+        }
+    }
+    
+    private static NeuronGroup create(NeuronModel model, int size, ComputeBackend backend) {
+        InputGenerator generator = model == NeuronModel.ADEX ? new UniformNoiseGenerator(1.5e-9) :
+            new UniformNoiseGenerator(2.5e-3);
+        NeuronGroup neurons = NeuronFactory.create(model, "N", size, true, generator);
+        neurons.setBackend(backend);
+        return neurons;
+    }
+    
+    private static void benchmarkStdp(int size, int steps) {
+        Network network = new Network(ComputeBackend.ARRAY);
+        network.setSeed(1);
+        RandomStream random = network.splitRandom();
+        NeuronGroup source = NeuronFactory.createPoissonExcitatory("SRC", size, 10);
+        NeuronGroup target = NeuronFactory.createLifExcitatory("TGT", size, 0.6e-3, random);
+        network.addNeuronGroups(source, target);
+        SparseUniformTopology topology = new SparseUniformTopology();
+        topology.setConnectivity(0.01);
+        StdpSynapseGroup synapses = (StdpSynapseGroup)SynapseFactory.connectWithStdp("SRC_TGT", source, target, topology,
+                1e-6, DelayDistribution.uniform(1, 10), random);
+        network.addSynapseGroups(synapses);
+        System.out.println("STDP: " + synapses.getSparseWeights().getValues().length + " synapses");
+        for (boolean plastic : new boolean[] { false, true }) {
+            synapses.setPlastic(plastic);
+            int step = 0;
+            for (; step < steps / 10; ++step) {
+                network.update(step);
+            }
+            long sourceSpikes = 0;
+            long targetSpikes = 0;
+            long start = System.nanoTime();
+            for (int end = step + steps; step < end; ++step) {
+                network.update(step);
+                sourceSpikes += source.getSpikeCount();
+                targetSpikes += target.getSpikeCount();
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            double seconds = steps / 1000.0;
+            System.out.println((plastic ? "plastic" : "static") + ": " + Math.round(steps / elapsed) +
+                    " steps/s, " + String.format("%.2f", seconds / elapsed) + "x real time at 1 kHz (source " +
+                    String.format("%.1f", sourceSpikes / seconds / size) + " Hz, target " +
+                    String.format("%.1f", targetSpikes / seconds / size) + " Hz)");
+        }
+        network.shutdown();
+    }
+    
+    private static void run(NeuronGroup neurons, int steps) {
+        for (int step = 0; step < steps; ++step) {
+            neurons.update(step);
+        }
+    }
+}
@@ -2,14 +2,14 @@ package expresscogs.utility;
 
 import org.jblas.DoubleMatrix;
 import org.jblas.MatrixFunctions;
-import expresscogs.network.NeuronGroup;
+import expresscogs.network.NeuronGroupState;
 
 public class LocalFieldPotentialSensor {
-    private NeuronGroup neurons;
+    private NeuronGroupState neurons;
     private DoubleMatrix distanceToElectrode;
     private double lfp;
     
-    public LocalFieldPotentialSensor(NeuronGroup neurons) {
+    public LocalFieldPotentialSensor(NeuronGroupState neurons) {
         this.neurons = neurons;
         setElectrodePosition(0.5, 0.5);
     }
@@ -3,7 +3,7 @@ package expresscogs.utility;
 import org.jblas.DoubleMatrix;
 import org.jblas.MatrixFunctions;
 
-import expresscogs.network.NeuronGroup;
+import expresscogs.network.NeuronGroupState;
 
 /**
  * NeuralFieldSensor sorts the action potentials generated by a neuron group into bins spaced
@@ -11,7 +11,7 @@ import expresscogs.network.NeuronGroup;
  * in each bin, resulting in a moving average neural field.
  */
 public class NeuralFieldSensor {
-    private NeuronGroup neurons;
+    private NeuronGroupState neurons;
     private DoubleMatrix position;
     private DoubleMatrix spikes;
     private DoubleMatrix field;
@@ -22,7 +22,7 @@ public class NeuralFieldSensor {
     private int step;
     
     /** Construct a NeuralFieldSensor which will record from the given NeuronGroup. */
-    public NeuralFieldSensor(NeuronGroup neurons) {
+    public NeuralFieldSensor(NeuronGroupState neurons) {
         this.neurons = neurons;
         setupField();
     }
@@ -66,7 +66,9 @@ public class NeuralFieldSensor {
     public void update(double t) {
         spikes.putColumn(step % window, spikes.getColumn(step % window).fill(0));
         DoubleMatrix indices = MatrixFunctions.floori(neurons.getXPosition().add(binWidth / 2).mul(bins - 1));
-        for (int n : neurons.getSpikes().findIndices()) {
+        int[] spikeIndices = neurons.getSpikeIndices();
+        for (int k = 0; k < neurons.getSpikeCount(); ++k) {
+            int n = spikeIndices[k];
             spikes.put((int)indices.get(n), step % window, spikes.get(step % window) + 1);
         }
         field = spikes.rowSums().mul(frequency / window);
@@ -0,0 +1,336 @@
+package expresscogs.utility;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.DoubleSupplier;
+
+import org.jblas.DoubleMatrix;
+
+import expresscogs.network.NeuronGroup;
+import expresscogs.network.NeuronGroupState;
+
+/**
+ * SensorPipeline runs sensors and recorders as a pipeline stage on their own thread, so the network can
+ * advance to the next step while the previous one is analysed. Each step the simulation thread publishes
+ * a snapshot of the spikes, and optionally the conductances, of the tracked neuron groups and the values
+ * of any tracked quantities into a ring of preallocated slots. The stage thread consumes the slots in
+ * order. The ring has a single producer and a single consumer, so it is coordinated by two counters
+ * rather than locks, and publishing waits for a free slot when the stage falls behind. A thread which finds
+ * nothing to do parks without a timeout until the other side unparks it.
+ *
+ * Sensors are constructed on the snapshot views returned by track, which only expose the read-only
+ * NeuronGroupState and may only be read from within a stage, or after drain while nothing is published. The stage thread is started by the first publish and stopped by close,
+ * after which the next publish starts it again.
+ */
+public class SensorPipeline implements Closeable {
+    /** Stage analyses the snapshot of one step on the pipeline thread. */
+    public interface Stage {
+        void update(int step, double t);
+    }
+
+    private static final int SPINS_BEFORE_PARK = 64;
+
+    private int capacity;
+    private List<GroupSnapshot> groups = new ArrayList<GroupSnapshot>();
+    private List<DoubleSupplier> sources = new ArrayList<DoubleSupplier>();
+    private List<Stage> stages = new ArrayList<Stage>();
+    private int[] steps;
+    private double[] times;
+    private double[][] values;
+    // Number of slots published by the simulation thread and consumed by the stage thread
+    private AtomicLong head = new AtomicLong();
+    private AtomicLong tail = new AtomicLong();
+    // Slot read by the snapshot views, only accessed from the stage thread
+    private int readSlot;
+    private Thread thread;
+    private volatile boolean running;
+    private volatile Throwable failure;
+    // Threads parked waiting for a slot to be published or consumed, or null if none is waiting
+    private volatile Thread waitingConsumer;
+    private volatile Thread waitingProducer;
+
+    public SensorPipeline(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Pipeline capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    /** Track the spikes of a neuron group, and its conductances if requested, returning a snapshot view. */
+    public NeuronGroupState track(NeuronGroup group, boolean conductances) {
+        checkNotStarted();
+        GroupSnapshot snapshot = new GroupSnapshot(group, conductances);
+        groups.add(snapshot);
+        return snapshot;
+    }
+
+    /** Track a quantity read on the simulation thread, returning a supplier of its value in the snapshot. */
+    public DoubleSupplier track(DoubleSupplier source) {
+        checkNotStarted();
+        int index = sources.size();
+        sources.add(source);
+        return () -> values[readSlot][index];
+    }
+
+    /** Add a stage, which is run for each snapshot in the order the stages were added. */
+    public void addStage(Stage stage) {
+        checkNotStarted();
+        stages.add(stage);
+    }
+
+    private void checkNotStarted() {
+        if (steps != null) {
+            throw new IllegalStateException("The sensor pipeline has already started");
+        }
+    }
+
+    private void start() {
+        if (steps == null) {
+            steps = new int[capacity];
+            times = new double[capacity];
+            values = new double[capacity][sources.size()];
+        }
+        failure = null;
+        running = true;
+        thread = new Thread(this::consume, "sensor-pipeline");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Capture a snapshot of the current step, waiting for a free slot if the stage has fallen behind. */
+    public void publish(int step, double t) {
+        if (thread == null) {
+            start();
+        }
+        long published = head.get();
+        awaitConsumed(published - capacity + 1);
+        int slot = (int)(published % capacity);
+        steps[slot] = step;
+        times[slot] = t;
+        for (int k = 0; k < sources.size(); ++k) {
+            values[slot][k] = sources.get(k).getAsDouble();
+        }
+        for (GroupSnapshot group : groups) {
+            group.capture(slot);
+        }
+        // Writing the counter publishes the slot contents to the stage thread
+        head.set(published + 1);
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /** Wait until the stage has analysed every published snapshot. */
+    public void drain() {
+        if (thread == null) {
+            return;
+        }
+        awaitConsumed(head.get());
+        checkFailure();
+    }
+    
+    /** Wait on the calling thread until the stage has consumed the given number of slots. */
+    private void awaitConsumed(long count) {
+        for (int spins = 0; tail.get() < count; ++spins) {
+            checkFailure();
+            if (spins < SPINS_BEFORE_PARK) {
+                Thread.yield();
+                continue;
+            }
+            // Announce the wait before checking again, so that a slot consumed in between unparks this thread
+            waitingProducer = Thread.currentThread();
+            if (tail.get() < count && failure == null) {
+                LockSupport.park(this);
+            }
+            waitingProducer = null;
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new IllegalStateException("Sensor pipeline stage failed", failure);
+        }
+    }
+
+    private void consume() {
+        long consumed = tail.get();
+        int spins = 0;
+        try {
+            while (true) {
+                if (consumed == head.get()) {
+                    if (!running) {
+                        return;
+                    }
+                    if (spins++ < SPINS_BEFORE_PARK) {
+                        Thread.yield();
+                        continue;
+                    }
+                    // Announce the wait before checking again, so that a publish in between unparks this thread
+                    waitingConsumer = Thread.currentThread();
+                    if (consumed == head.get() && running) {
+                        LockSupport.park(this);
+                    }
+                    waitingConsumer = null;
+                    continue;
+                }
+                spins = 0;
+                readSlot = (int)(consumed % capacity);
+                for (Stage stage : stages) {
+                    stage.update(steps[readSlot], times[readSlot]);
+                }
+                // Writing the counter returns the slot to the simulation thread
+                tail.set(++consumed);
+                unparkProducer();
+            }
+        } catch (Throwable e) {
+            failure = e;
+            unparkProducer();
+        }
+    }
+
+    private void unparkProducer() {
+        Thread producer = waitingProducer;
+        if (producer != null) {
+            LockSupport.unpark(producer);
+        }
+    }
+
+    /** Analyse the remaining snapshots and stop the stage thread, which the next publish starts again. */
+    @Override
+    public void close() {
+        if (thread == null) {
+            return;
+        }
+        try {
+            drain();
+        } finally {
+            running = false;
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    /** GroupSnapshot is a read-only view of a neuron group as it was in the slot being analysed. */
+    private class GroupSnapshot implements NeuronGroupState {
+        private NeuronGroup group;
+        private boolean conductances;
+        private int[][] spikeIndices;
+        private int[] spikeCounts;
+        private DoubleMatrix[] excitatory;
+        private DoubleMatrix[] inhibitory;
+        private DoubleMatrix[] leak;
+        private DoubleMatrix spikes;
+        private long spikesSnapshot = -1;
+
+        GroupSnapshot(NeuronGroup group, boolean conductances) {
+            this.group = group;
+            this.conductances = conductances;
+            int size = group.getSize();
+            spikeIndices = new int[capacity][size];
+            spikeCounts = new int[capacity];
+            if (conductances) {
+                excitatory = new DoubleMatrix[capacity];
+                inhibitory = new DoubleMatrix[capacity];
+                leak = new DoubleMatrix[capacity];
+                for (int slot = 0; slot < capacity; ++slot) {
+                    excitatory[slot] = new DoubleMatrix(size);
+                    inhibitory[slot] = new DoubleMatrix(size);
+                    leak[slot] = new DoubleMatrix(size);
+                }
+            }
+            spikes = DoubleMatrix.zeros(size);
+        }
+
+        void capture(int slot) {
+            int count = group.getSpikeCount();
+            System.arraycopy(group.getSpikeIndices(), 0, spikeIndices[slot], 0, count);
+            spikeCounts[slot] = count;
+            if (conductances) {
+                excitatory[slot].copy(group.getExcitatoryConductance());
+                inhibitory[slot].copy(group.getInhibitoryConductance());
+                leak[slot].copy(group.getLeakConductance());
+            }
+        }
+
+        private DoubleMatrix conductance(DoubleMatrix[] slots) {
+            if (!conductances) {
+                throw new UnsupportedOperationException("Conductances of " + getName() + " are not tracked");
+            }
+            return slots[readSlot];
+        }
+
+        @Override
+        public String getName() {
+            return group.getName();
+        }
+
+        @Override
+        public int getSize() {
+            return group.getSize();
+        }
+
+        @Override
+        public boolean isExcitatory() {
+            return group.isExcitatory();
+        }
+
+        /** Positions never change, so they are shared with the group. */
+        @Override
+        public DoubleMatrix getXPosition() {
+            return group.getXPosition();
+        }
+
+        @Override
+        public DoubleMatrix getYPosition() {
+            return group.getYPosition();
+        }
+
+        @Override
+        public DoubleMatrix getExcitatoryConductance() {
+            return conductance(excitatory);
+        }
+
+        @Override
+        public DoubleMatrix getInhibitoryConductance() {
+            return conductance(inhibitory);
+        }
+
+        @Override
+        public DoubleMatrix getLeakConductance() {
+            return conductance(leak);
+        }
+
+        /** The dense spike vector is rebuilt from the spike indices when it is first read for a slot. */
+        @Override
+        public DoubleMatrix getSpikes() {
+            long consumed = tail.get();
+            if (spikesSnapshot != consumed) {
+                spikes.fill(0);
+                for (int k = 0; k < spikeCounts[readSlot]; ++k) {
+                    spikes.data[spikeIndices[readSlot][k]] = 1;
+                }
+                spikesSnapshot = consumed;
+            }
+            return spikes;
+        }
+
+        @Override
+        public int[] getSpikeIndices() {
+            return spikeIndices[readSlot];
+        }
+
+        @Override
+        public int getSpikeCount() {
+            return spikeCounts[readSlot];
+        }
+    }
+}
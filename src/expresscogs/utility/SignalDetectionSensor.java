@@ -1,21 +1,28 @@
 package expresscogs.utility;
 
-import org.jblas.DoubleMatrix;
-import org.jblas.MatrixFunctions;
+import java.util.function.DoubleSupplier;
 
 import expresscogs.network.TopologicalStimulusGenerator;
-import expresscogs.network.NeuronGroup;
+import expresscogs.network.NeuronGroupState;
 
 public class SignalDetectionSensor {
-    private NeuronGroup neurons;
-    private TopologicalStimulusGenerator generator;
+    private NeuronGroupState neurons;
+    private DoubleSupplier position;
+    private DoubleSupplier width;
     private double signalStrength;
     private double noiseStrength;
     private double frequency = 1000;
     
-    public SignalDetectionSensor(NeuronGroup neurons, TopologicalStimulusGenerator generator) {
+    public SignalDetectionSensor(NeuronGroupState neurons, TopologicalStimulusGenerator generator) {
+        this(neurons, generator::getPosition, generator::getWidth);
+    }
+    
+    /** Construct a sensor which reads the stimulus position and width from suppliers, such as the values
+     * tracked by a SensorPipeline. */
+    public SignalDetectionSensor(NeuronGroupState neurons, DoubleSupplier position, DoubleSupplier width) {
         this.neurons = neurons;
-        this.generator = generator;
+        this.position = position;
+        this.width = width;
     }
     
     public double getSignalStrength() {
@@ -27,10 +34,24 @@ public class SignalDetectionSensor {
     }
     
     public void update(double t) {
-        double signal = generator.getPosition();
-        double width = generator.getWidth();
-        DoubleMatrix signalIndex = MatrixFunctions.abs(neurons.getXPosition().sub(signal)).lt(width);
-        signalStrength = neurons.getSpikes().get(signalIndex).mean() * frequency;
-        noiseStrength = neurons.getSpikes().get(signalIndex.not()).mean() * frequency;
+        double signal = position.getAsDouble();
+        double width = this.width.getAsDouble();
+        double[] x = neurons.getXPosition().data;
+        int signalSize = 0;
+        for (int n = 0; n < x.length; ++n) {
+            if (Math.abs(x[n] - signal) < width) {
+                ++signalSize;
+            }
+        }
+        int[] spikeIndices = neurons.getSpikeIndices();
+        int spikeCount = neurons.getSpikeCount();
+        int signalSpikes = 0;
+        for (int k = 0; k < spikeCount; ++k) {
+            if (Math.abs(x[spikeIndices[k]] - signal) < width) {
+                ++signalSpikes;
+            }
+        }
+        signalStrength = (double)signalSpikes / signalSize * frequency;
+        noiseStrength = (double)(spikeCount - signalSpikes) / (x.length - signalSize) * frequency;
     }
 }
@@ -1,5 +1,6 @@
 package expresscogs.utility;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -36,9 +37,19 @@ public class SpikeRasterPlot extends BufferedPlot {
         double offset = 0;
         int i = 0;
         for (NeuronGroup group : network.getNeuronGroups()) {
-            DoubleMatrix sampledSpikes = group.getSpikes().and(sampleIndices.get(i++));
-            double[] points = group.getXPosition().get(sampledSpikes).add(offset).data;
-            data.get(group.getName()).bufferPoints(t, points);
+            double[] sample = sampleIndices.get(i++).data;
+            double[] x = group.getXPosition().data;
+            int[] spikeIndices = group.getSpikeIndices();
+            int spikeCount = group.getSpikeCount();
+            double[] points = new double[spikeCount];
+            int numPoints = 0;
+            for (int k = 0; k < spikeCount; ++k) {
+                int n = spikeIndices[k];
+                if (sample[n] != 0) {
+                    points[numPoints++] = x[n] + offset;
+                }
+            }
+            data.get(group.getName()).bufferPoints(t, Arrays.copyOf(points, numPoints));
             offset += 1;
         }
     }